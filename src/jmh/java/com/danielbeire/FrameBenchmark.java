@@ -0,0 +1,62 @@
+package com.danielbeire;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// A whole frame as MapPanel.paintComponent draws it (background, graticule, the real
+// country outlines and a trace) into an offscreen image, turning a little every frame.
+// "moving" uses the coarser graticule and outline level MapPanel picks while dragging.
+// "raster" draws graticule and outlines with LineRaster and blits the frame once;
+// "raster-aliased" is the same without Wu antialiasing.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FrameBenchmark {
+
+    @Param({"0.6", "1.0", "3.0"})
+    public double zoom;
+
+    @Param({"still", "moving"})
+    public String motion;
+
+    @Param({"java2d", "raster", "raster-aliased"})
+    public String backend;
+
+    private final GlobeRenderer renderer = new GlobeRenderer();
+    private final BufferedImage image = new BufferedImage(1600, 1000, BufferedImage.TYPE_INT_RGB);
+    private double rotationY;
+
+    @Setup
+    public void setup() throws Exception {
+        renderer.setCountries(GlobeAsset.load());
+        renderer.setTrace(TraceArcBenchmark.trace(12, 1));
+        boolean moving = motion.equals("moving");
+        renderer.setCoarse(moving, moving);
+        renderer.setRasterBackend(!backend.equals("java2d"));
+        renderer.setRasterAntialias(!backend.equals("raster-aliased"));
+    }
+
+    @Benchmark
+    public int frame() {
+        rotationY += 0.01;
+        Graphics2D g2 = image.createGraphics();
+        renderer.render(g2, image.getWidth(), image.getHeight(), zoom, Math.toRadians(20), rotationY);
+        g2.dispose();
+        return renderer.getStats().verticesProjected;
+    }
+}
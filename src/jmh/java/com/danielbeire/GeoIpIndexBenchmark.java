@@ -0,0 +1,87 @@
+package com.danielbeire;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The offline GeoIP index on a synthetic table of millions of ranges, built through
+// importCsv at setup: the binary search alone (find) and from dotted text as
+// LocalGeoEngine sees it (parseIpv4 + find). Ranges cover three quarters of the address
+// space, so about one lookup in four misses. Scores are lookups per second.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeoIpIndexBenchmark {
+
+    @Param({"3000000"})
+    public int ranges;
+
+    private static final int QUERIES = 1 << 16;
+
+    private File dir;
+    private GeoIpIndex index;
+    private final long[] ips = new long[QUERIES];
+    private final String[] dotted = new String[QUERIES];
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("geoip-bench").toFile();
+        File csv = new File(dir, "ranges.csv"), bin = new File(dir, "geoip.bin");
+        long stride = (1L << 32) / ranges;
+        Random rnd = new Random(7);
+        try (BufferedWriter w = Files.newBufferedWriter(csv.toPath(), StandardCharsets.UTF_8)) {
+            w.write("ip_from,ip_to,latitude,longitude\n");
+            for (int i = 0; i < ranges; i++) {
+                long start = i * stride;
+                w.write(start + "," + (start + stride * 3 / 4) + "," + (rnd.nextInt(180) - 90) + "," + (rnd.nextInt(360) - 180) + "\n");
+            }
+        }
+        long t0 = System.nanoTime();
+        GeoIpIndex.importCsv(csv, bin, 2, 3);
+        System.out.printf("imported %d ranges (%d MB CSV) in %d ms%n", ranges, csv.length() >> 20, (System.nanoTime() - t0) / 1_000_000);
+        csv.delete();
+        index = GeoIpIndex.open(bin);
+
+        for (int i = 0; i < QUERIES; i++) {
+            long ip = rnd.nextInt() & 0xFFFFFFFFL;
+            ips[i] = ip;
+            dotted[i] = (ip >>> 24) + "." + ((ip >>> 16) & 0xFF) + "." + ((ip >>> 8) & 0xFF) + "." + (ip & 0xFF);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        // the mapping stays valid after the file is deleted (on Windows the delete fails; harmless)
+        new File(dir, "geoip.bin").delete();
+        dir.delete();
+    }
+
+    @Benchmark
+    public int find() {
+        return index.find(ips[next++ & (QUERIES - 1)]);
+    }
+
+    @Benchmark
+    public int parseAndFind() {
+        return index.find(GeoIpIndex.parseIpv4(dotted[next++ & (QUERIES - 1)]));
+    }
+}
@@ -0,0 +1,115 @@
+package com.danielbeire;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+import java.awt.Point;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// geoIP lookups against a local stub of the ip-api.com batch endpoint, so no network
+// is involved: a trace whose hops are all cached, a trace with three new hops (one
+// HTTP round trip to the stub), and a bare GeoCache probe. The stub needs
+// sun.net.httpserver.nodelay: without it every round trip stalls ~40 ms on Nagle plus
+// delayed ACK on the server side, which would hide everything the client does.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dtv.geoip.cache.file=none", "-Dsun.net.httpserver.nodelay=true"})
+public class GeoLookupBenchmark {
+
+    private static final int HOPS = 30;
+    private static final int NEW_PER_TRACE = 3;
+
+    private HttpServer stub;
+    private final geoIP geo = new geoIP();
+    private final List<String> cachedTrace = new ArrayList<>();
+    private final String[] mixedTrace = new String[HOPS];
+    private int fresh;
+
+    private final GeoCache cache = new GeoCache(20000, TimeUnit.DAYS.toMillis(30), TimeUnit.HOURS.toMillis(1));
+    private final String[] cached = new String[16384];
+    private int probe;
+
+    @Setup
+    public void setup() throws Exception {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.setExecutor(Executors.newFixedThreadPool(4));
+        stub.createContext("/batch", ex -> {
+            JsonArray out = new JsonArray();
+            for (JsonElement e : JsonParser.parseReader(new InputStreamReader(ex.getRequestBody(), StandardCharsets.UTF_8)).getAsJsonArray()) {
+                String ip = e.getAsJsonObject().get("query").getAsString();
+                JsonObject o = new JsonObject();
+                o.addProperty("query", ip);
+                o.addProperty("status", "success");
+                o.addProperty("lat", (ip.hashCode() & 0xFFFF) % 120 - 60);
+                o.addProperty("lon", (ip.hashCode() >>> 16) % 360 - 180);
+                out.add(o);
+            }
+            byte[] body = out.toString().getBytes(StandardCharsets.UTF_8);
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        stub.start();
+        System.setProperty("tv.geoip.engine", "http");
+        System.setProperty("tv.geoip.url", "http://127.0.0.1:" + stub.getAddress().getPort() + "/batch");
+
+        for (int i = 0; i < HOPS; i++) cachedTrace.add("62.115." + i + ".1");
+        geo.locate(cachedTrace);
+        for (int i = 0; i < HOPS; i++) mixedTrace[i] = cachedTrace.get(i);
+
+        for (int i = 0; i < cached.length; i++) {
+            cached[i] = "10." + (i >> 8) + "." + (i & 0xFF) + ".1";
+            cache.put(cached[i], new Point.Double(i % 360 - 180, i % 120 - 60));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        stub.stop(0);
+    }
+
+    @Benchmark
+    public Point.Double[] cachedTrace() throws Exception {
+        return geo.locate(cachedTrace);
+    }
+
+    // the last hops of the trace have not been seen before
+    @Benchmark
+    public Point.Double[] traceWithNewHops() throws Exception {
+        for (int i = HOPS - NEW_PER_TRACE; i < HOPS; i++) {
+            int n = fresh++;
+            mixedTrace[i] = "100." + ((n >> 16) & 0xFF) + "." + ((n >> 8) & 0xFF) + "." + (n & 0xFF);
+        }
+        return geo.locate(Arrays.asList(mixedTrace));
+    }
+
+    @Benchmark
+    public GeoCache.Entry cacheGet() {
+        return cache.get(cached[probe++ & (cached.length - 1)]);
+    }
+}
@@ -0,0 +1,62 @@
+package com.danielbeire;
+
+import java.io.CharArrayReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// HopParser on recorded traceroute and tracert output (traceroute-recorded.txt, 24
+// traces, 379 lines): the whole recording from memory through parse(Reader), and line
+// by line through parseLine as Traceroute reads a running process.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    private char[] recording;
+    private String[] lines;
+    private final HopParser parser = new HopParser();
+    // folds every hop into a result so nothing is optimized away, without allocating
+    private long seen;
+    private final HopParser.Listener listener = hop -> seen += hop.ttl() + hop.responderCount() + hop.probeCount();
+
+    @Setup
+    public void setup() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        try (InputStream in = ParserBenchmark.class.getResourceAsStream("/traceroute-recorded.txt");
+             Reader r = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            char[] buf = new char[8192];
+            int n;
+            while ((n = r.read(buf)) > 0) sb.append(buf, 0, n);
+        }
+        recording = sb.toString().toCharArray();
+        lines = sb.toString().split("\n");
+    }
+
+    @Benchmark
+    public long parseRecording() throws Exception {
+        parser.parse(new CharArrayReader(recording), listener);
+        return seen;
+    }
+
+    @Benchmark
+    public long parseLines() {
+        for (String line : lines) parser.parseLine(line, listener);
+        return seen;
+    }
+}
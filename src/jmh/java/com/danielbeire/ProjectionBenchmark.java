@@ -0,0 +1,87 @@
+package com.danielbeire;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Country outlines alone: rotating and projecting one level of the pyramid into
+// ProjectedPaths, and projecting plus drawing it the way the renderer does: stroked by
+// Java2D, or rasterized by LineRaster (Wu-antialiased). Divide by the vertex count of the
+// level (printed at setup) for per-vertex cost.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ProjectionBenchmark {
+
+    // 0 is the coarsest level, 4 the full 50m outlines
+    @Param({"0", "2", "4"})
+    public int level;
+
+    private GeometryStore outlines;
+    private final View view = new View();
+    private final RenderStats stats = new RenderStats();
+    private final ProjectedPaths paths = new ProjectedPaths();
+    private final BufferedImage image = new BufferedImage(1600, 1000, BufferedImage.TYPE_INT_RGB);
+    private Graphics2D g2;
+    private final LineRaster raster = new LineRaster();
+    private double rotationY;
+
+    @Setup
+    public void setup() throws Exception {
+        LodPyramid countries = GlobeAsset.load();
+        outlines = countries.level(Math.min(level, countries.levelCount() - 1));
+        System.out.println("level " + level + ": " + outlines.pathCount() + " paths, " + outlines.vertexCount() + " vertices");
+        g2 = image.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setStroke(new BasicStroke(1.2f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        g2.setColor(new Color(145, 185, 230, 230));
+        raster.begin(image.getWidth(), image.getHeight());
+        raster.setColor(new Color(145, 185, 230, 230), 1f, 1.2f);
+    }
+
+    @TearDown
+    public void tearDown() {
+        g2.dispose();
+    }
+
+    @Benchmark
+    public int project() {
+        view.set(image.getWidth(), image.getHeight(), 1.0, Math.toRadians(20), rotationY += 0.01);
+        stats.reset();
+        paths.clear();
+        paths.project(outlines, view, stats);
+        return paths.vertexCount();
+    }
+
+    @Benchmark
+    public int projectAndDraw() {
+        int n = project();
+        paths.draw(g2);
+        return n;
+    }
+
+    @Benchmark
+    public int projectAndRaster() {
+        int n = project();
+        raster.draw(paths);
+        return n;
+    }
+}
@@ -0,0 +1,90 @@
+package com.danielbeire;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Great-circle arcs of long traces: tessellating the hops into a TraceGeometry (once
+// per trace, or per hop as hops stream in) and projecting and stroking its arcs, which
+// happens every frame.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TraceArcBenchmark {
+
+    @Param({"10", "30", "100"})
+    public int hops;
+
+    private List<Point.Double> coords;
+    private TraceGeometry trace;
+    private final View view = new View();
+    private final RenderStats stats = new RenderStats();
+    private final ProjectedPaths paths = new ProjectedPaths();
+    private final BufferedImage image = new BufferedImage(1600, 1000, BufferedImage.TYPE_INT_RGB);
+    private Graphics2D g2;
+    private double rotationY;
+
+    // A trace of n hops hopping across continents; seeded, so every run draws the same
+    static List<Point.Double> coords(int n, long seed) {
+        Random rnd = new Random(seed);
+        List<Point.Double> out = new ArrayList<>();
+        for (int i = 0; i < n; i++) out.add(new Point.Double(rnd.nextDouble() * 360 - 180, rnd.nextDouble() * 130 - 60));
+        return out;
+    }
+
+    static TraceGeometry trace(int n, long seed) {
+        return TraceGeometry.of(coords(n, seed));
+    }
+
+    @Setup
+    public void setup() {
+        coords = coords(hops, 42);
+        trace = TraceGeometry.of(coords);
+        g2 = image.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setStroke(new BasicStroke(2.3f));
+        g2.setColor(new Color(255, 60, 60));
+    }
+
+    @TearDown
+    public void tearDown() {
+        g2.dispose();
+    }
+
+    @Benchmark
+    public TraceGeometry tessellate() {
+        return TraceGeometry.of(coords);
+    }
+
+    @Benchmark
+    public int projectAndDraw() {
+        view.set(image.getWidth(), image.getHeight(), 1.0, Math.toRadians(20), rotationY += 0.01);
+        stats.reset();
+        paths.clear();
+        paths.project(trace.arcs(), view, stats);
+        paths.draw(g2);
+        return paths.vertexCount();
+    }
+}
@@ -0,0 +1,36 @@
+package com.danielbeire;
+
+import java.io.File;
+
+// Settings read from system properties (-Dtv.xxx=...), with defaults.
+public final class AppConfig {
+
+    private AppConfig() {}
+
+    // Per-user directory for caches and generated assets
+    public static File dataDir() {
+        String dir = System.getProperty("tv.home");
+        File f = dir != null ? new File(dir) : new File(System.getProperty("user.home"), ".traceroute-visualizer");
+        if (!f.isDirectory() && !f.mkdirs()) {
+            System.err.println("Could not create data directory " + f);
+        }
+        return f;
+    }
+
+    public static String get(String key, String def) {
+        String v = System.getProperty("tv." + key);
+        return v != null && !v.trim().isEmpty() ? v.trim() : def;
+    }
+
+    public static int getInt(String key, int def) {
+        try {
+            return Integer.parseInt(get(key, Integer.toString(def)));
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean def) {
+        return Boolean.parseBoolean(get(key, Boolean.toString(def)));
+    }
+}
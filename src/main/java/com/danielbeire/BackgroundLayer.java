@@ -0,0 +1,85 @@
+package com.danielbeire;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RadialGradientPaint;
+import java.awt.RenderingHints;
+import java.awt.Stroke;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+
+// Everything under the graticule that does not depend on rotation: background, drop
+// shadow, ocean gradient and atmosphere. Rendered once into an image keyed by
+// (width, height, radius) and blitted every frame.
+public class BackgroundLayer {
+
+    static final Color BG = new Color(10, 18, 34);
+    private static final Color OCEAN_BASE = new Color(36, 72, 140);
+    private static final Color OCEAN_HL = new Color(60, 100, 180);
+    private static final Color RIM = new Color(180, 210, 255, 60);
+    private static final Color GLOW_IN = new Color(160, 200, 255, 0);
+    private static final Color GLOW_OUT = new Color(160, 200, 255, 70);
+    private static final Stroke RIM_STROKE = new BasicStroke(1.2f);
+
+    private BufferedImage image;
+    private int width, height, radius;
+
+    // gc may be null (offscreen / headless), in which case a plain RGB image is used
+    public void paint(Graphics2D g2, View v, GraphicsConfiguration gc) {
+        if (image == null || width != v.width || height != v.height || radius != v.radius) {
+            rebuild(v, gc);
+        }
+        g2.drawImage(image, 0, 0, null);
+    }
+
+    private void rebuild(View v, GraphicsConfiguration gc) {
+        width = v.width;
+        height = v.height;
+        radius = v.radius;
+        int w = Math.max(1, width), h = Math.max(1, height);
+        if (image == null || image.getWidth() != w || image.getHeight() != h) {
+            if (image != null) image.flush();
+            image = gc != null ? gc.createCompatibleImage(w, h) : new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        }
+
+        final int r = radius, cx = v.cx, cy = v.cy;
+        Graphics2D g2 = image.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+
+        // background
+        g2.setColor(BG);
+        g2.fillRect(0, 0, w, h);
+
+        // shadow
+        g2.setComposite(AlphaComposite.SrcOver.derive(0.30f));
+        g2.setColor(Color.black);
+        g2.fillOval(cx - r + 12, cy - r + 16, (r * 2), (r * 2));
+        g2.setComposite(AlphaComposite.SrcOver);
+
+        // ocean
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setPaint(new RadialGradientPaint(
+                new Point2D.Float(cx - r * 0.25f, cy - r * 0.25f),
+                r * 1.05f,
+                new float[]{0f, 1f},
+                new Color[]{OCEAN_HL, OCEAN_BASE}
+        ));
+        g2.fillOval(cx - r, cy - r, r * 2, r * 2);
+
+        // rim glow
+        g2.setPaint(new RadialGradientPaint(
+                new Point2D.Float(cx, cy),
+                r * 1.08f,
+                new float[]{0.92f, 1.0f},
+                new Color[]{GLOW_IN, GLOW_OUT}
+        ));
+        g2.fillOval(cx - (int)(r * 1.08), cy - (int)(r * 1.08), (int)(r * 2.16), (int)(r * 2.16));
+        g2.setColor(RIM);
+        g2.setStroke(RIM_STROKE);
+        g2.drawOval(cx - r, cy - r, r * 2, r * 2);
+        g2.dispose();
+    }
+}
@@ -0,0 +1,195 @@
+package com.danielbeire;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.awt.Point;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Traces many targets concurrently, at most -Dtv.batch.concurrency at a time. Each
+// trace runs on a virtual thread where the runtime has them (Java 21+), otherwise on
+// a pool thread. All traces share one GeoBatcher, so hop IPs from different traces are
+// looked up together and each distinct IP only once. Every finished trace is written
+// as one JSON line:
+//
+// {"target":"example.com","started":"2024-..Z","millis":5230,
+//  "hops":[{"ttl":1,"ip":"192.168.1.1","responders":["192.168.1.1"],"rtt":[0.5,0.4,0.4],
+//           "loss":0.0,"lat":..,"lon":..}, ...]}
+//
+// With the parallel hop source every trace probes all TTLs at once, one ping process
+// each: up to concurrency x tv.trace.max.ttl processes (16 x 30 by default). PingProber
+// caps them JVM-wide at -Dtv.trace.probe.concurrency; probes beyond that queue, so a
+// higher batch concurrency then mostly lengthens each trace.
+//
+// A failed trace is written with an "error" field instead of hops. Successful traces
+// are also appended to the TraceStore history unless -Dtv.history=false, or while
+// another process (e.g. the window) has the history open.
+public class BatchTracer {
+
+    public interface Listener {
+        // called after the trace's line has been written; error is null on success
+        void finished(String target, int hops, int located, String error);
+    }
+
+    private final int concurrency;
+    private final geoIP geo = new geoIP();
+
+    public BatchTracer() {
+        this(AppConfig.getInt("batch.concurrency", 16));
+    }
+
+    public BatchTracer(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    // One target per line; blank lines and lines starting with '#' are skipped
+    public static List<String> readTargets(BufferedReader in) throws IOException {
+        List<String> targets = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) targets.add(line);
+        }
+        return targets;
+    }
+
+    public static List<String> readTargets(File file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return readTargets(in);
+        }
+    }
+
+    // Traces all targets and writes one JSON line per trace to out, in completion order.
+    // Returns the number of traces that failed.
+    public int run(List<String> targets, Writer out, Listener listener) throws Exception {
+        ExecutorService executor = newExecutor();
+        Semaphore slots = new Semaphore(concurrency);
+        AtomicInteger failed = new AtomicInteger();
+        List<CompletableFuture<Void>> running = new ArrayList<>();
+        try (GeoBatcher batcher = new GeoBatcher(geo)) {
+            for (String target : targets) {
+                slots.acquire();
+                running.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        JsonObject result = traceOne(target, batcher);
+                        if (result.has("error")) failed.incrementAndGet();
+                        synchronized (out) {
+                            out.write(result.toString());
+                            out.write('\n');
+                            out.flush();
+                        }
+                        if (listener != null) {
+                            listener.finished(target, result.has("hops") ? result.getAsJsonArray("hops").size() : 0,
+                                    result.has("located") ? result.get("located").getAsInt() : 0,
+                                    result.has("error") ? result.get("error").getAsString() : null);
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    } finally {
+                        slots.release();
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(running.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            executor.shutdown();
+        }
+        return failed.get();
+    }
+
+    private JsonObject traceOne(String target, GeoBatcher batcher) {
+        JsonObject o = new JsonObject();
+        o.addProperty("target", target);
+        long started = System.currentTimeMillis();
+        o.addProperty("started", Instant.ofEpochMilli(started).toString());
+        long t0 = System.nanoTime();
+        List<CompletableFuture<Point.Double>> where = new ArrayList<>();
+        try {
+            // geolocate each hop as soon as it is known, while the trace continues
+            List<Hop> hops = Traceroute.source().trace(target, line -> { }, hop ->
+                    where.add(hop.address() != null ? batcher.submit(hop.address()) : CompletableFuture.completedFuture(null)));
+            Metrics.TRACEROUTE.record(System.nanoTime() - t0);
+            JsonArray arr = new JsonArray();
+            Map<String, Point.Double> located = new HashMap<>();
+            for (int i = 0; i < hops.size(); i++) {
+                Point.Double p = where.get(i).exceptionally(e -> null).join();
+                if (p != null) located.put(hops.get(i).address(), p);
+                arr.add(toJson(hops.get(i), p));
+            }
+            if (AppConfig.getBoolean("history", true)) {
+                try {
+                    // read-only while another process writes it; shared() has said so once
+                    TraceStore store = TraceStore.shared();
+                    if (store.writable()) store.append(TraceRecord.of(target, started, hops, located));
+                } catch (IOException | IllegalArgumentException e) {
+                    System.err.println("Could not save " + target + " to history: " + e.getMessage());
+                }
+            }
+            o.addProperty("millis", (System.nanoTime() - t0) / 1_000_000);
+            o.addProperty("located", located.size());
+            o.add("hops", arr);
+        } catch (Exception e) {
+            o.addProperty("millis", (System.nanoTime() - t0) / 1_000_000);
+            o.addProperty("error", e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+        return o;
+    }
+
+    private static JsonObject toJson(Hop hop, Point.Double where) {
+        JsonObject h = new JsonObject();
+        h.addProperty("ttl", hop.ttl());
+        if (hop.address() != null) h.addProperty("ip", hop.address());
+        JsonArray responders = new JsonArray();
+        for (int r = 0; r < hop.responderCount(); r++) responders.add(hop.responder(r));
+        h.add("responders", responders);
+        JsonArray rtt = new JsonArray();
+        for (int i = 0; i < hop.probeCount(); i++) {
+            if (Float.isNaN(hop.rtt(i))) rtt.add((Number) null); else rtt.add(hop.rtt(i));
+        }
+        h.add("rtt", rtt);
+        h.addProperty("loss", hop.loss());
+        if (where != null) {
+            h.addProperty("lat", where.y);
+            h.addProperty("lon", where.x);
+        }
+        return h;
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() when running on Java 21+; the build
+    // targets Java 8, so it is looked up reflectively
+    private ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger n = new AtomicInteger();
+            return Executors.newFixedThreadPool(concurrency, r -> {
+                Thread t = new Thread(r, "batch-trace-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public static boolean virtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.danielbeire;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Runs the system traceroute (tracert on Windows) and parses its output as it is printed
+public class ExecHopSource implements HopSource {
+
+    @Override
+    public List<Hop> trace(String domain, Consumer<String> onOutput, Consumer<Hop> onHop) throws Exception {
+        String os = System.getProperty("os.name").toLowerCase();
+        String command = os.contains("win") ? "tracert " + domain : "traceroute " + domain;
+
+        Process process = Runtime.getRuntime().exec(command);
+
+        List<Hop> hops;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            hops = new HopParser().readLines(reader, onOutput, onHop, 0);
+        }
+
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new RuntimeException("Traceroute command failed. Make sure it's installed and you have network connectivity.");
+        }
+
+        return hops;
+    }
+}
@@ -0,0 +1,150 @@
+package com.danielbeire;
+
+import java.awt.Window;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+// Drives animation frames for a component on the EDT, replacing a fixed-rate Timer:
+//  - the next animation tick is scheduled when the previous frame has been painted,
+//    one frame period after that frame started, so slow paints slow the ticks down;
+//  - animation stops while the component is not showing (hidden, window iconified)
+//    and after a period without user input, and restarts on the next input;
+//  - any number of requestFrame() calls between two paints result in one repaint;
+//  - a paint that overruns the frame budget is counted as skipped frames.
+public class FrameScheduler {
+
+    // Advances the animation by dt seconds before a frame is requested
+    public interface Animation {
+        void advance(double dtSeconds);
+    }
+
+    private final JComponent target;
+    private final Animation animation;
+    private final Timer tick;
+    private long periodNanos;
+    private long idleTimeoutNanos;
+
+    private boolean animating = true;
+    private boolean framePending;
+    private boolean idle;
+    private boolean iconified;
+    private long lastTickNanos;
+    private long lastInputNanos = System.nanoTime();
+    private long lastPaintNanos;
+    private long framesPainted;
+    private long framesSkipped;
+    private Window watchedWindow;
+
+    public FrameScheduler(JComponent target, Animation animation) {
+        this.target = target;
+        this.animation = animation;
+        setTargetFps(AppConfig.getInt("fps", 25));
+        setIdleTimeoutSeconds(AppConfig.getInt("idle.seconds", 300));
+
+        tick = new Timer(0, e -> onTick());
+        tick.setRepeats(false);
+
+        target.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & (HierarchyEvent.SHOWING_CHANGED | HierarchyEvent.PARENT_CHANGED)) != 0) {
+                watchWindow();
+                // a repaint requested while hidden may never have been painted
+                framePending = false;
+                lastTickNanos = 0;
+                if (isRunning()) requestFrame();
+            }
+        });
+    }
+
+    public void setTargetFps(int fps) {
+        periodNanos = 1_000_000_000L / Math.max(1, Math.min(240, fps));
+    }
+
+    public int getTargetFps() {
+        return (int) Math.round(1e9 / periodNanos);
+    }
+
+    // 0 disables the idle pause
+    public void setIdleTimeoutSeconds(int seconds) {
+        idleTimeoutNanos = seconds <= 0 ? Long.MAX_VALUE : seconds * 1_000_000_000L;
+    }
+
+    public void setAnimating(boolean animating) {
+        this.animating = animating;
+        if (animating) requestFrame();
+    }
+
+    // True while animation frames are being produced (not paused, hidden or idle)
+    public boolean isRunning() {
+        return animating && !idle && !iconified && target.isShowing();
+    }
+
+    public long getFramesPainted() { return framesPainted; }
+    public long getFramesSkipped() { return framesSkipped; }
+    public long getLastPaintNanos() { return lastPaintNanos; }
+
+    // Call on every user input; wakes the animation after an idle pause.
+    public void userActivity() {
+        lastInputNanos = System.nanoTime();
+        if (idle) {
+            idle = false;
+            lastTickNanos = 0;
+        }
+        requestFrame();
+    }
+
+    // Coalesces repaint requests until the next paint.
+    public void requestFrame() {
+        if (framePending) return;
+        framePending = true;
+        target.repaint();
+    }
+
+    // Call at the start of paintComponent; requests from here on get a new frame.
+    public void frameStarted() {
+        framePending = false;
+    }
+
+    // Call at the end of paintComponent with the time the paint took.
+    public void frameRendered(long paintNanos) {
+        lastPaintNanos = paintNanos;
+        framesPainted++;
+        if (paintNanos > periodNanos) framesSkipped += paintNanos / periodNanos;
+
+        long now = System.nanoTime();
+        if (now - lastInputNanos > idleTimeoutNanos) idle = true;
+        if (!isRunning() || tick.isRunning()) return;
+        long delayNanos = Math.max(0, periodNanos - paintNanos);
+        tick.setInitialDelay((int) Math.max(1, delayNanos / 1_000_000L));
+        tick.restart();
+    }
+
+    private void onTick() {
+        if (!isRunning()) return;
+        long now = System.nanoTime();
+        // clamp so a long pause does not turn into a jump
+        double dt = lastTickNanos == 0 ? periodNanos / 1e9 : Math.min(0.25, (now - lastTickNanos) / 1e9);
+        lastTickNanos = now;
+        animation.advance(dt);
+        requestFrame();
+    }
+
+    private void watchWindow() {
+        Window w = SwingUtilities.getWindowAncestor(target);
+        if (w == watchedWindow || w == null) return;
+        watchedWindow = w;
+        w.addWindowListener(new WindowAdapter() {
+            @Override public void windowIconified(WindowEvent e) {
+                iconified = true;
+            }
+            @Override public void windowDeiconified(WindowEvent e) {
+                iconified = false;
+                lastTickNanos = 0;
+                requestFrame();
+            }
+        });
+    }
+}
@@ -0,0 +1,109 @@
+package com.danielbeire;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Collects single-IP lookups from any number of threads into batches: IPs submitted
+// within a short window of each other (-Dtv.geoip.batch.millis) are looked up through
+// geoIP together. Batches are looked up concurrently, so a slow lookup does not hold
+// back the next one. One batcher can be shared by many traces.
+public class GeoBatcher implements AutoCloseable {
+
+    private static final int MAX_BATCH = 100;
+
+    private static final ExecutorService LOOKUPS = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "geo-lookup");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final class Request {
+        final String ip;
+        final CompletableFuture<Point.Double> where = new CompletableFuture<>();
+        final long submitted = System.nanoTime();
+
+        Request(String ip) {
+            this.ip = ip;
+        }
+    }
+
+    private static final Request END = new Request(null);
+
+    private final geoIP geo;
+    private final long windowNanos;
+    private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread worker;
+
+    public GeoBatcher(geoIP geo) {
+        this(geo, AppConfig.getInt("geoip.batch.millis", 100));
+    }
+
+    public GeoBatcher(geoIP geo, long windowMillis) {
+        this.geo = geo;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, windowMillis));
+        worker = new Thread(this::run, "geo-batcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Completes with (lon, lat), with null if ip could not be located, or exceptionally
+    // if the lookup failed
+    public CompletableFuture<Point.Double> submit(String ip) {
+        Request r = new Request(ip);
+        queue.add(r);
+        return r.where;
+    }
+
+    // Looks up what is still queued, then stops; lookups in progress still complete
+    @Override
+    public void close() throws InterruptedException {
+        queue.add(END);
+        worker.join();
+    }
+
+    private void run() {
+        boolean end = false;
+        try {
+            while (!end) {
+                Request first = queue.take();
+                if (first == END) break;
+                List<Request> batch = new ArrayList<>();
+                // collect whatever arrives within the window after the first IP
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < MAX_BATCH) {
+                    long left = deadline - System.nanoTime();
+                    Request next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    if (next == END) {
+                        end = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+                LOOKUPS.execute(() -> lookup(batch));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void lookup(List<Request> batch) {
+        List<String> ips = new ArrayList<>(batch.size());
+        for (Request r : batch) ips.add(r.ip);
+        try {
+            Point.Double[] where = geo.locate(ips);
+            long now = System.nanoTime();
+            for (Request r : batch) Metrics.GEOLOCATION.record(now - r.submitted);
+            for (int i = 0; i < batch.size(); i++) batch.get(i).where.complete(where[i]);
+        } catch (Throwable e) {
+            for (Request r : batch) r.where.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.danielbeire;
+
+import java.awt.Point;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// IP -> location cache shared by all lookups. Entries live in lock-striped LRU maps,
+// each stripe holding an equal share of the size bound, so concurrent traces only
+// contend when they hash to the same stripe. Found locations and failed lookups
+// expire after separate TTLs. The cache can be saved to and reloaded from a file,
+// so routers seen in earlier sessions resolve without a lookup.
+public class GeoCache {
+
+    private static final int MAGIC = 0x43494F47; // "GOIC"
+    private static final int VERSION = 1;
+    private static final int STRIPES = 16;
+
+    // A cached answer; point is null for a lookup that failed (negative entry)
+    public static final class Entry {
+        public final Point.Double point;
+        final long expiresAt;
+
+        Entry(Point.Double point, long expiresAt) {
+            this.point = point;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final long hitTtlMillis;
+    private final long failTtlMillis;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public GeoCache(int maxEntries, long hitTtlMillis, long failTtlMillis) {
+        int perStripe = Math.max(1, (maxEntries + STRIPES - 1) / STRIPES);
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe(perStripe);
+        this.hitTtlMillis = hitTtlMillis;
+        this.failTtlMillis = failTtlMillis;
+    }
+
+    // -Dtv.geoip.cache.size (entries), -Dtv.geoip.ttl.hours, -Dtv.geoip.negative.minutes
+    public static GeoCache fromConfig() {
+        return new GeoCache(
+                AppConfig.getInt("geoip.cache.size", 20000),
+                AppConfig.getInt("geoip.ttl.hours", 24 * 30) * 3_600_000L,
+                AppConfig.getInt("geoip.negative.minutes", 60) * 60_000L);
+    }
+
+    // -Dtv.geoip.cache.file, empty or "none" disables persistence
+    public static File configuredFile() {
+        String f = AppConfig.get("geoip.cache.file", new File(AppConfig.dataDir(), "geoip-cache.bin").getPath());
+        return f.equalsIgnoreCase("none") ? null : new File(f);
+    }
+
+    // The entry for ip, or null if it is not cached or has expired.
+    public Entry get(String ip) {
+        Stripe s = stripe(ip);
+        Entry e;
+        synchronized (s) {
+            e = s.get(ip);
+            if (e != null && e.expiresAt <= System.currentTimeMillis()) {
+                s.remove(ip);
+                expirations.increment();
+                e = null;
+            }
+        }
+        if (e == null) misses.increment(); else hits.increment();
+        return e;
+    }
+
+    // Caches a located ip, or a failed lookup when point is null.
+    public void put(String ip, Point.Double point) {
+        long ttl = point != null ? hitTtlMillis : failTtlMillis;
+        put(ip, new Entry(point, System.currentTimeMillis() + ttl));
+    }
+
+    private void put(String ip, Entry e) {
+        Stripe s = stripe(ip);
+        synchronized (s) {
+            s.put(ip, e);
+        }
+    }
+
+    public int size() {
+        int n = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                n += s.size();
+            }
+        }
+        return n;
+    }
+
+    public long hits() { return hits.sum(); }
+    public long misses() { return misses.sum(); }
+    public long evictions() { return evictions.sum(); }
+    public long expirations() { return expirations.sum(); }
+
+    public double hitRatio() {
+        long h = hits.sum(), total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    // Writes all live entries to file (atomically, via a temp file).
+    public void save(File file) throws IOException {
+        List<String> ips = new ArrayList<>();
+        List<Entry> entries = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                for (Map.Entry<String, Entry> e : s.entrySet()) {
+                    if (e.getValue().expiresAt <= now) continue;
+                    ips.add(e.getKey());
+                    entries.add(e.getValue());
+                }
+            }
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ips.size());
+            for (int i = 0; i < ips.size(); i++) {
+                Entry e = entries.get(i);
+                out.writeUTF(ips.get(i));
+                out.writeLong(e.expiresAt);
+                out.writeBoolean(e.point != null);
+                if (e.point != null) {
+                    out.writeDouble(e.point.x);
+                    out.writeDouble(e.point.y);
+                }
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Loads entries saved by save(), skipping expired ones; returns how many were loaded.
+    public int load(File file) throws IOException {
+        if (!file.isFile()) return 0;
+        int loaded = 0;
+        long now = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Not a GeoIP cache file: " + file);
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String ip = in.readUTF();
+                long expiresAt = in.readLong();
+                Point.Double p = in.readBoolean() ? new Point.Double(in.readDouble(), in.readDouble()) : null;
+                if (expiresAt <= now) continue;
+                put(ip, new Entry(p, expiresAt));
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GeoCache[size=%d hits=%d misses=%d evictions=%d expirations=%d]",
+                size(), hits(), misses(), evictions(), expirations());
+    }
+
+    private Stripe stripe(String ip) {
+        int h = ip.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    // Access-ordered LRU; guarded by its own monitor
+    private final class Stripe extends LinkedHashMap<String, GeoCache.Entry> {
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(Math.min(capacity, 1024) * 4 / 3 + 1, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override protected boolean removeEldestEntry(Map.Entry<String, GeoCache.Entry> eldest) {
+            if (size() <= capacity) return false;
+            evictions.increment();
+            return true;
+        }
+    }
+}
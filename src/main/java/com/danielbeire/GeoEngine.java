@@ -0,0 +1,13 @@
+package com.danielbeire;
+
+import java.awt.Point;
+import java.util.List;
+import java.util.Map;
+
+// Resolves IP addresses to coordinates. Selected with -Dtv.geoip.engine=http|local.
+public interface GeoEngine {
+
+    // (lon, lat) per ip; null for ips that could not be located. IPs missing from the
+    // result were not answered (e.g. request failed) and are not cached.
+    Map<String, Point.Double> locate(List<String> ips) throws Exception;
+}
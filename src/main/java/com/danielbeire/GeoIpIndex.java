@@ -0,0 +1,233 @@
+package com.danielbeire;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Offline IPv4 -> location table: sorted, non-overlapping ranges in a memory-mapped file.
+// Lookups are a binary search over the mapped arrays and create no objects.
+//
+// Layout (little-endian): magic, version, count, then four arrays of count entries:
+// int start[], int end[] (both stored with the sign bit flipped so signed comparison
+// orders them as unsigned addresses), float lat[], float lon[]
+public final class GeoIpIndex {
+
+    private static final int MAGIC = 0x50494F47; // "GOIP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+
+    private final int count;
+    private final IntBuffer starts;
+    private final IntBuffer ends;
+    private final FloatBuffer lats;
+    private final FloatBuffer lons;
+
+    private GeoIpIndex(MappedByteBuffer buf) throws IOException {
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.capacity() < HEADER_BYTES || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+            throw new IOException("Not a GeoIP index (version " + VERSION + ")");
+        }
+        count = buf.getInt(8);
+        starts = slice(buf, HEADER_BYTES, count).asIntBuffer();
+        ends = slice(buf, HEADER_BYTES + count * 4, count).asIntBuffer();
+        lats = slice(buf, HEADER_BYTES + count * 8, count).asFloatBuffer();
+        lons = slice(buf, HEADER_BYTES + count * 12, count).asFloatBuffer();
+    }
+
+    public static GeoIpIndex open(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new GeoIpIndex(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    public int size() { return count; }
+
+    // Row of the range containing ip (as returned by parseIpv4), or -1.
+    public int find(long ip) {
+        if (ip < 0) return -1;
+        int key = (int) ip ^ Integer.MIN_VALUE;
+        int lo = 0, hi = count - 1, row = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts.get(mid) <= key) {
+                row = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return row >= 0 && key <= ends.get(row) ? row : -1;
+    }
+
+    public float lat(int row) { return lats.get(row); }
+    public float lon(int row) { return lons.get(row); }
+
+    // Dotted IPv4 -> unsigned value in a long, or -1 if s is not an IPv4 address.
+    public static long parseIpv4(CharSequence s) {
+        return parseIpv4(s, 0, s.length());
+    }
+
+    public static long parseIpv4(CharSequence s, int from, int to) {
+        long ip = 0;
+        int octet = -1, dots = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) return -1;
+            } else if (c == '.' && octet >= 0 && dots < 3) {
+                ip = (ip << 8) | octet;
+                octet = -1;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+        return dots == 3 && octet >= 0 ? (ip << 8) | octet : -1;
+    }
+
+    // Imports a range CSV: start IP, end IP (dotted or integer) or a CIDR network in the
+    // first column, with latitude and longitude in the given columns. Header lines,
+    // IPv6 rows and rows without coordinates are skipped.
+    public static int importCsv(File csv, File out, int latCol, int lonCol) throws IOException {
+        int n = 0;
+        int[] starts = new int[1 << 16], ends = new int[1 << 16];
+        float[] lats = new float[1 << 16], lons = new float[1 << 16];
+        String[] fields = new String[Math.max(latCol, lonCol) + 4];
+        try (BufferedReader r = Files.newBufferedReader(csv.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                int nf = splitCsv(line, fields);
+                if (nf <= Math.max(latCol, lonCol)) continue;
+                long start, end;
+                int slash = fields[0].indexOf('/');
+                if (slash > 0) {
+                    start = parseIpv4(fields[0], 0, slash);
+                    int bits;
+                    try {
+                        bits = Integer.parseInt(fields[0].substring(slash + 1));
+                    } catch (NumberFormatException e) {
+                        continue;
+                    }
+                    if (start < 0 || bits < 0 || bits > 32) continue;
+                    long size = 1L << (32 - bits);
+                    start &= ~(size - 1);
+                    end = start + size - 1;
+                } else {
+                    start = parseAddress(fields[0]);
+                    end = parseAddress(fields[1]);
+                }
+                if (start < 0 || end < start) continue;
+                float lat, lon;
+                try {
+                    lat = Float.parseFloat(fields[latCol]);
+                    lon = Float.parseFloat(fields[lonCol]);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (n == starts.length) {
+                    starts = Arrays.copyOf(starts, n * 2);
+                    ends = Arrays.copyOf(ends, n * 2);
+                    lats = Arrays.copyOf(lats, n * 2);
+                    lons = Arrays.copyOf(lons, n * 2);
+                }
+                starts[n] = (int) start ^ Integer.MIN_VALUE;
+                ends[n] = (int) end ^ Integer.MIN_VALUE;
+                lats[n] = lat;
+                lons[n] = lon;
+                n++;
+            }
+        }
+
+        // sort rows by start without boxing: (start << 32 | row) orders by start
+        long[] order = new long[n];
+        for (int i = 0; i < n; i++) order[i] = ((long) starts[i] << 32) | i;
+        Arrays.sort(order);
+
+        // the binary search needs disjoint ranges (merged feeds often overlap): a range
+        // starting inside the previous one is clipped to start after it, one lying
+        // entirely inside it is dropped. Of equal starts, the earlier row wins.
+        int kept = 0, clipped = 0;
+        for (int i = 0; i < n; i++) {
+            int row = (int) order[i];
+            if (kept > 0) {
+                int prevEnd = ends[(int) order[kept - 1]];
+                if (ends[row] <= prevEnd) continue;
+                if (starts[row] <= prevEnd) {
+                    starts[row] = prevEnd + 1;
+                    clipped++;
+                }
+            }
+            order[kept++] = row;
+        }
+        if (kept < n || clipped > 0) {
+            System.err.printf("GeoIP import: %d overlapping ranges clipped, %d nested ranges dropped%n", clipped, n - kept);
+        }
+        n = kept;
+
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + n * 16).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(n);
+        for (int i = 0; i < n; i++) buf.putInt(starts[(int) order[i]]);
+        for (int i = 0; i < n; i++) buf.putInt(ends[(int) order[i]]);
+        for (int i = 0; i < n; i++) buf.putFloat(lats[(int) order[i]]);
+        for (int i = 0; i < n; i++) buf.putFloat(lons[(int) order[i]]);
+        buf.flip();
+
+        File tmp = new File(out.getPath() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) ch.write(buf);
+        }
+        Files.move(tmp.toPath(), out.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return n;
+    }
+
+    // dotted quad or decimal integer
+    private static long parseAddress(String s) {
+        if (s.indexOf('.') >= 0) return parseIpv4(s);
+        try {
+            long v = Long.parseLong(s.trim());
+            return v >= 0 && v <= 0xFFFFFFFFL ? v : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Splits a CSV line into fields (quotes stripped), up to fields.length; returns the count.
+    private static int splitCsv(String line, String[] fields) {
+        int n = 0, i = 0, len = line.length();
+        while (i <= len && n < fields.length) {
+            int end;
+            if (i < len && line.charAt(i) == '"') {
+                end = line.indexOf('"', i + 1);
+                if (end < 0) end = len;
+                fields[n++] = line.substring(i + 1, end);
+                end = line.indexOf(',', end);
+                if (end < 0) end = len;
+            } else {
+                end = line.indexOf(',', i);
+                if (end < 0) end = len;
+                fields[n++] = line.substring(i, end).trim();
+            }
+            i = end + 1;
+        }
+        return n;
+    }
+
+    private static ByteBuffer slice(MappedByteBuffer buf, int offset, int entries) {
+        ByteBuffer dup = buf.duplicate();
+        dup.position(offset).limit(offset + entries * 4);
+        return dup.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
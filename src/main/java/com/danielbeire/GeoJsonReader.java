@@ -0,0 +1,92 @@
+package com.danielbeire;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+// Reads polygon outlines into a GeometryStore (Java port of geojson_to_countries_txt.py).
+// Outer rings only, closing vertex dropped, paths split where they cross the date line.
+public final class GeoJsonReader {
+
+    private GeoJsonReader() {}
+
+    public static void read(Reader in, GeometryStore out) throws IOException {
+        JsonObject root = JsonParser.parseReader(in).getAsJsonObject();
+        if (root.has("features")) {
+            for (JsonElement f : root.getAsJsonArray("features")) {
+                JsonElement g = f.getAsJsonObject().get("geometry");
+                if (g != null && g.isJsonObject()) readGeometry(g.getAsJsonObject(), out);
+            }
+        } else {
+            readGeometry(root, out);
+        }
+        out.endPath();
+    }
+
+    // countries.txt format: "lon,lat" per line, blank line between paths
+    public static void readText(Reader in, GeometryStore out) throws IOException {
+        BufferedReader br = new BufferedReader(in);
+        String line;
+        while ((line = br.readLine()) != null) {
+            String t = line.trim();
+            if (t.isEmpty()) {
+                out.endPath();
+                continue;
+            }
+            int comma = t.indexOf(',');
+            if (comma < 0) continue;
+            int end = t.indexOf(',', comma + 1);
+            double lon = Double.parseDouble(t.substring(0, comma));
+            double lat = Double.parseDouble(end < 0 ? t.substring(comma + 1) : t.substring(comma + 1, end));
+            out.addLonLat(lon, lat);
+        }
+        out.endPath();
+    }
+
+    private static void readGeometry(JsonObject geom, GeometryStore out) {
+        String type = geom.has("type") ? geom.get("type").getAsString() : "";
+        switch (type) {
+            case "Polygon":
+                readRing(geom.getAsJsonArray("coordinates").get(0).getAsJsonArray(), out);
+                break;
+            case "MultiPolygon":
+                for (JsonElement poly : geom.getAsJsonArray("coordinates")) {
+                    readRing(poly.getAsJsonArray().get(0).getAsJsonArray(), out);
+                }
+                break;
+            case "GeometryCollection":
+                for (JsonElement g : geom.getAsJsonArray("geometries")) readGeometry(g.getAsJsonObject(), out);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void readRing(JsonArray ring, GeometryStore out) {
+        int n = ring.size();
+        if (n >= 2 && ring.get(0).equals(ring.get(n - 1))) n--;
+        out.beginPath();
+        double lastLon = 0;
+        for (int i = 0; i < n; i++) {
+            JsonArray p = ring.get(i).getAsJsonArray();
+            if (p.size() < 2) continue;
+            double lon = normLon(p.get(0).getAsDouble());
+            double lat = p.get(1).getAsDouble();
+            if (i > 0 && Math.abs(lon - lastLon) > 180) out.beginPath(); // crossing the seam
+            out.addLonLat(lon, lat);
+            lastLon = lon;
+        }
+        out.endPath();
+    }
+
+    private static double normLon(double lon) {
+        while (lon <= -180) lon += 360;
+        while (lon > 180) lon -= 360;
+        return lon;
+    }
+}
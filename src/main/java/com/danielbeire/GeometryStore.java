@@ -0,0 +1,198 @@
+package com.danielbeire;
+
+import java.util.Arrays;
+
+// Packed polylines on the unit sphere: x,y,z floats per vertex, plus path start offsets.
+// Path i spans vertices [offsets[i], offsets[i + 1]).
+public class GeometryStore {
+
+    private float[] coords;
+    private int[] offsets;
+    // Bounding cap per path: centre x,y,z and sin of the angular radius (> 1 for caps
+    // wider than a hemisphere, which can never be culled or drawn unclipped)
+    private float[] caps;
+    private int vertexCount;
+    private int pathCount;
+    private int pathStart = -1;
+
+    public GeometryStore() {
+        this(1024, 64);
+    }
+
+    public GeometryStore(int vertexCapacity, int pathCapacity) {
+        coords = new float[Math.max(1, vertexCapacity) * 3];
+        offsets = new int[Math.max(1, pathCapacity) + 1];
+        caps = new float[Math.max(1, pathCapacity) * 4];
+    }
+
+    // Wraps already-packed arrays, e.g. read back from a GlobeAsset file
+    public static GeometryStore wrap(float[] coords, int[] offsets, int pathCount) {
+        GeometryStore g = new GeometryStore(1, 1);
+        g.coords = coords;
+        g.offsets = offsets;
+        g.pathCount = pathCount;
+        g.vertexCount = pathCount == 0 ? 0 : offsets[pathCount];
+        g.caps = new float[pathCount * 4];
+        for (int p = 0; p < pathCount; p++) g.computeCap(p);
+        return g;
+    }
+
+    public void beginPath() {
+        if (pathStart >= 0) endPath();
+        pathStart = vertexCount;
+    }
+
+    public void addVertex(double x, double y, double z) {
+        if (pathStart < 0) pathStart = vertexCount;
+        if (vertexCount * 3 + 3 > coords.length) {
+            coords = Arrays.copyOf(coords, Math.max(coords.length * 2, vertexCount * 3 + 3));
+        }
+        int i = vertexCount * 3;
+        coords[i] = (float) x;
+        coords[i + 1] = (float) y;
+        coords[i + 2] = (float) z;
+        vertexCount++;
+    }
+
+    // lon/lat in degrees -> unit vector
+    public void addLonLat(double lonDeg, double latDeg) {
+        double lat = Math.toRadians(latDeg);
+        double lon = Math.toRadians(lonDeg);
+        double c = Math.cos(lat);
+        addVertex(c * Math.cos(lon), Math.sin(lat), c * Math.sin(lon));
+    }
+
+    // Closes the current path; paths with fewer than two vertices are dropped.
+    public void endPath() {
+        if (pathStart < 0) return;
+        if (vertexCount - pathStart < 2) {
+            vertexCount = pathStart;
+        } else {
+            if (pathCount + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            if (pathCount * 4 + 4 > caps.length) {
+                caps = Arrays.copyOf(caps, Math.max(caps.length * 2, pathCount * 4 + 4));
+            }
+            offsets[pathCount] = pathStart;
+            offsets[pathCount + 1] = vertexCount;
+            computeCap(pathCount);
+            pathCount++;
+        }
+        pathStart = -1;
+    }
+
+    public void trimToSize() {
+        endPath();
+        if (coords.length != vertexCount * 3) coords = Arrays.copyOf(coords, vertexCount * 3);
+        if (offsets.length != pathCount + 1) offsets = Arrays.copyOf(offsets, pathCount + 1);
+        if (caps.length != pathCount * 4) caps = Arrays.copyOf(caps, pathCount * 4);
+    }
+
+    private void computeCap(int p) {
+        double sx = 0, sy = 0, sz = 0;
+        for (int v = offsets[p]; v < offsets[p + 1]; v++) {
+            sx += coords[v * 3]; sy += coords[v * 3 + 1]; sz += coords[v * 3 + 2];
+        }
+        double len = Math.sqrt(sx * sx + sy * sy + sz * sz);
+        double minDot = -1; // centre undefined (e.g. a full great circle): unbounded
+        if (len > 1e-9) {
+            sx /= len; sy /= len; sz /= len;
+            minDot = 1;
+            for (int v = offsets[p]; v < offsets[p + 1]; v++) {
+                minDot = Math.min(minDot, coords[v * 3] * sx + coords[v * 3 + 1] * sy + coords[v * 3 + 2] * sz);
+            }
+        }
+        int k = p * 4;
+        caps[k] = (float) sx; caps[k + 1] = (float) sy; caps[k + 2] = (float) sz;
+        // small margin for float rounding
+        caps[k + 3] = minDot <= 0 ? 2f : (float) (Math.sqrt(1 - minDot * minDot) + 1e-4);
+    }
+
+    public int pathCount() { return pathCount; }
+    public int vertexCount() { return vertexCount; }
+    public int pathStart(int path) { return offsets[path]; }
+    public int pathEnd(int path) { return offsets[path + 1]; }
+
+    // Raw arrays for the render loop; index vertex v at coords[v * 3 .. v * 3 + 2].
+    public float[] coords() { return coords; }
+    public int[] offsets() { return offsets; }
+    // Bounding caps, four floats per path: centre x,y,z and sin(radius).
+    public float[] caps() { return caps; }
+
+    // Douglas-Peucker on the sphere: a vertex is dropped when it lies within tolerance
+    // (radians) of the great circle through the kept neighbours. Paths that collapse
+    // to a segment shorter than the tolerance are dropped altogether.
+    public GeometryStore simplify(double tolerance) {
+        GeometryStore out = new GeometryStore(vertexCount, pathCount);
+        int maxLen = maxPathLength();
+        boolean[] keep = new boolean[maxLen];
+        int[] stack = new int[maxLen * 2 + 2];
+        for (int p = 0; p < pathCount; p++) {
+            int start = offsets[p], n = offsets[p + 1] - start;
+            Arrays.fill(keep, 0, n, false);
+            keep[0] = keep[n - 1] = true;
+            int sp = 0, kept = 2;
+            stack[sp++] = 0;
+            stack[sp++] = n - 1;
+            while (sp > 0) {
+                int b = stack[--sp], a = stack[--sp];
+                if (b - a < 2) continue;
+                int worst = -1;
+                double worstDist = tolerance;
+                for (int i = a + 1; i < b; i++) {
+                    double d = distanceToArc(start + i, start + a, start + b);
+                    if (d > worstDist) { worstDist = d; worst = i; }
+                }
+                if (worst < 0) continue;
+                keep[worst] = true;
+                kept++;
+                stack[sp++] = a; stack[sp++] = worst;
+                stack[sp++] = worst; stack[sp++] = b;
+            }
+            if (kept == 2 && extent(start, n) < tolerance) continue;
+            out.beginPath();
+            for (int i = 0; i < n; i++) {
+                if (!keep[i]) continue;
+                int k = (start + i) * 3;
+                out.addVertex(coords[k], coords[k + 1], coords[k + 2]);
+            }
+            out.endPath();
+        }
+        out.trimToSize();
+        return out;
+    }
+
+    // angular distance (small-angle) of vertex p from the great circle through a and b
+    private double distanceToArc(int p, int a, int b) {
+        int pk = p * 3, ak = a * 3, bk = b * 3;
+        double ax = coords[ak], ay = coords[ak + 1], az = coords[ak + 2];
+        double bx = coords[bk], by = coords[bk + 1], bz = coords[bk + 2];
+        double px = coords[pk], py = coords[pk + 1], pz = coords[pk + 2];
+        double nx = ay * bz - az * by, ny = az * bx - ax * bz, nz = ax * by - ay * bx;
+        double len = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (len < 1e-12) {
+            double dx = px - ax, dy = py - ay, dz = pz - az;
+            return Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+        return Math.abs(px * nx + py * ny + pz * nz) / len;
+    }
+
+    // largest chord from the first vertex of a path
+    private double extent(int start, int n) {
+        int k0 = start * 3;
+        double max = 0;
+        for (int i = 1; i < n; i++) {
+            int k = (start + i) * 3;
+            double dx = coords[k] - coords[k0], dy = coords[k + 1] - coords[k0 + 1], dz = coords[k + 2] - coords[k0 + 2];
+            max = Math.max(max, dx * dx + dy * dy + dz * dz);
+        }
+        return Math.sqrt(max);
+    }
+
+    public int maxPathLength() {
+        int max = 0;
+        for (int i = 0; i < pathCount; i++) max = Math.max(max, offsets[i + 1] - offsets[i]);
+        return max;
+    }
+}
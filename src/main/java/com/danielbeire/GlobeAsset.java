@@ -0,0 +1,203 @@
+package com.danielbeire;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+// Precompiled country outlines: unit vectors written once at build time (or first run)
+// and memory-mapped at startup instead of parsing text.
+//
+// Layout (little-endian): magic, version, levelCount, then per level (coarsest first):
+// float tolerance, pathCount, vertexCount, int offsets[pathCount + 1], float xyz[vertexCount * 3]
+public final class GlobeAsset {
+
+    public static final String RESOURCE = "globe.bin";
+    // source@toleranceDeg per level, coarsest first
+    public static final String DEFAULT_LEVELS =
+            "world.geojson@1.0,world.geojson@0.25,world-50m2.geojson@0.1,world-50m1.geojson@0.05,world-50m1.geojson@0";
+    private static final int MAGIC = 0x424F4C47; // "GLOB"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 12;
+    private static final int LEVEL_HEADER_BYTES = 12;
+
+    private GlobeAsset() {}
+
+    // Finds (or builds) the asset and maps it. Safe to call off the EDT.
+    public static LodPyramid load() throws IOException {
+        return map(locate());
+    }
+
+    public static GeometryStore compile(File source) throws IOException {
+        try (InputStream in = Files.newInputStream(source.toPath())) {
+            return compile(in, source.getName().endsWith(".txt"));
+        }
+    }
+
+    private static GeometryStore compile(InputStream in, boolean text) throws IOException {
+        GeometryStore g = new GeometryStore(1 << 16, 1 << 10);
+        Reader r = new InputStreamReader(in, StandardCharsets.UTF_8);
+        if (text) GeoJsonReader.readText(r, g);
+        else GeoJsonReader.read(r, g);
+        g.trimToSize();
+        return g;
+    }
+
+    // Builds a pyramid from "source@toleranceDeg" specs; missing sources are skipped.
+    public static LodPyramid compileLevels(String[] specs) throws IOException {
+        Map<String, GeometryStore> parsed = new HashMap<>();
+        LodPyramid pyramid = new LodPyramid();
+        for (String spec : specs) {
+            int at = spec.lastIndexOf('@');
+            String path = at < 0 ? spec : spec.substring(0, at);
+            double tolerance = at < 0 ? 0 : Math.toRadians(Double.parseDouble(spec.substring(at + 1)));
+            File source = new File(path.trim());
+            if (!source.isFile()) continue;
+            GeometryStore g = parsed.get(source.getPath());
+            if (g == null) {
+                g = compile(source);
+                parsed.put(source.getPath(), g);
+            }
+            pyramid.add(tolerance > 0 ? g.simplify(tolerance) : g, tolerance);
+        }
+        return pyramid;
+    }
+
+    public static void write(LodPyramid pyramid, File out) throws IOException {
+        int bytes = HEADER_BYTES;
+        for (int i = 0; i < pyramid.levelCount(); i++) {
+            GeometryStore g = pyramid.level(i);
+            bytes += LEVEL_HEADER_BYTES + (g.pathCount() + 1) * 4 + g.vertexCount() * 12;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(pyramid.levelCount());
+        for (int i = 0; i < pyramid.levelCount(); i++) {
+            GeometryStore g = pyramid.level(i);
+            int paths = g.pathCount(), verts = g.vertexCount();
+            buf.putFloat((float) pyramid.tolerance(i)).putInt(paths).putInt(verts);
+            buf.asIntBuffer().put(g.offsets(), 0, paths + 1);
+            buf.position(buf.position() + (paths + 1) * 4);
+            buf.asFloatBuffer().put(g.coords(), 0, verts * 3);
+            buf.position(buf.position() + verts * 12);
+        }
+        buf.rewind();
+
+        File parent = out.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) throw new IOException("Cannot create " + parent);
+        File tmp = new File(out.getPath() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) ch.write(buf);
+        }
+        Files.move(tmp.toPath(), out.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static LodPyramid map(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            if (ch.size() < HEADER_BYTES || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                throw new IOException(file + " is not a globe asset (version " + VERSION + ")");
+            }
+            LodPyramid pyramid = new LodPyramid();
+            int levels = buf.getInt();
+            for (int l = 0; l < levels; l++) {
+                double tolerance = buf.getFloat();
+                int paths = buf.getInt(), verts = buf.getInt();
+                int[] offsets = new int[paths + 1];
+                float[] coords = new float[verts * 3];
+                buf.asIntBuffer().get(offsets);
+                buf.position(buf.position() + offsets.length * 4);
+                buf.asFloatBuffer().get(coords);
+                buf.position(buf.position() + coords.length * 4);
+                pyramid.add(GeometryStore.wrap(coords, offsets, paths), tolerance);
+            }
+            return pyramid;
+        }
+    }
+
+    // 1. bundled asset on the file system (IDE / exec:java), mapped in place
+    // 2. bundled asset inside the jar, copied once to the data dir
+    // 3. first run without a bundled asset: compiled from the GeoJSON next to the app,
+    //    or from a legacy countries.txt on the classpath
+    private static File locate() throws IOException {
+        URL url = GlobeAsset.class.getClassLoader().getResource(RESOURCE);
+        if (url != null && "file".equals(url.getProtocol())) {
+            try {
+                return new File(url.toURI());
+            } catch (Exception ignored) {
+                // fall through to the copy below
+            }
+        }
+
+        File cached = new File(AppConfig.dataDir(), RESOURCE);
+        if (url != null) {
+            URLConnection con = url.openConnection();
+            if (!isCurrent(cached) || cached.length() != con.getContentLengthLong()) {
+                try (InputStream in = con.getInputStream()) {
+                    Files.copy(in, cached.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            return cached;
+        }
+        if (isCurrent(cached)) return cached;
+
+        LodPyramid pyramid = compileLevels(AppConfig.get("globe.levels", DEFAULT_LEVELS).split(","));
+        if (pyramid.levelCount() > 0) {
+            write(pyramid, cached);
+            return cached;
+        }
+        try (InputStream legacy = GlobeAsset.class.getClassLoader().getResourceAsStream("countries.txt")) {
+            if (legacy == null) {
+                throw new FileNotFoundException(RESOURCE + " not on classpath and no GeoJSON sources found");
+            }
+            write(LodPyramid.of(compile(legacy, true)), cached);
+            return cached;
+        }
+    }
+
+    private static boolean isCurrent(File f) {
+        if (!f.isFile() || f.length() < HEADER_BYTES) return false;
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            while (head.hasRemaining() && ch.read(head) >= 0) { }
+            head.flip();
+            return head.remaining() == 8 && head.getInt() == MAGIC && head.getInt() == VERSION;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Build step: GlobeAsset <out.bin> <source@toleranceDeg>...
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: GlobeAsset <out.bin> <source.geojson|countries.txt>[@toleranceDeg]...");
+            System.exit(2);
+        }
+        File out = new File(args[0]);
+        String[] specs = new String[args.length - 1];
+        System.arraycopy(args, 1, specs, 0, specs.length);
+        LodPyramid pyramid = compileLevels(specs);
+        if (pyramid.levelCount() == 0) throw new FileNotFoundException("no sources found: " + String.join(" ", specs));
+        write(pyramid, out);
+        for (int i = 0; i < pyramid.levelCount(); i++) {
+            System.out.printf("level %d: %.2f deg, %d paths, %d vertices%n", i, Math.toDegrees(pyramid.tolerance(i)),
+                    pyramid.level(i).pathCount(), pyramid.level(i).vertexCount());
+        }
+        System.out.println("wrote " + out);
+    }
+}
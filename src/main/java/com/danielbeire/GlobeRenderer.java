@@ -0,0 +1,229 @@
+package com.danielbeire;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Stroke;
+
+// Draws the globe (background, graticule, country outlines, route heat map and the
+// current trace) into any Graphics2D at a given size, rotation and zoom. It owns the
+// per-frame scratch buffers, so a renderer must only be used by one thread at a time:
+// MapPanel paints through one on the EDT, HeadlessRenderer keeps one per worker.
+public class GlobeRenderer {
+
+    // Styling
+    private static final Color COUNTRY_STROKE = new Color(145, 185, 230, 230);
+    private static final Color GRID = new Color(180, 200, 230, 70);
+    private static final BasicStroke COUNTRY_STROKE_WIDTH = new BasicStroke(1.2f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    private static final BasicStroke GRID_STROKE = new BasicStroke(1.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+    private static final BasicStroke EMPHASIS_STROKE = new BasicStroke(1.2f);
+    private static final Stroke TRACE_STROKE = new BasicStroke(2.3f);
+    private static final Color TRACE = new Color(255, 60, 60);
+    // heat map weight classes, light and thin for rare routes to wide and red for common ones
+    private static final Stroke[] HEAT_STROKES = new Stroke[RouteHeatMap.CLASSES];
+    private static final Color[] HEAT_COLORS = new Color[RouteHeatMap.CLASSES];
+    static {
+        for (int c = 0; c < RouteHeatMap.CLASSES; c++) {
+            float t = c / (float) (RouteHeatMap.CLASSES - 1);
+            HEAT_STROKES[c] = new BasicStroke(1f + 3.5f * t, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+            HEAT_COLORS[c] = new Color(255, (int) (220 - 180 * t), (int) (120 - 90 * t), (int) (70 + 180 * t));
+        }
+    }
+
+    // Scene; empty countries draw nothing until they are set
+    private LodPyramid countries = new LodPyramid();
+    private TraceGeometry trace;
+    private RouteHeatMap heatMap;
+
+    // Options for the next frame
+    private boolean parallelProjection;
+    private boolean rasterBackend, rasterAntialias = true;
+    private boolean coarseGrid;
+    private boolean coarseOutlines;
+    private float countryAlpha = 1f;
+    private GraphicsConfiguration gc;
+
+    // Per-frame scratch, reused so painting does not allocate
+    private final RenderStats stats = new RenderStats();
+    private final View view = new View();
+    private final BackgroundLayer background = new BackgroundLayer();
+    private final ProjectedPaths gridLines = new ProjectedPaths();
+    private final ProjectedPaths gridEmphasis = new ProjectedPaths();
+    private final ProjectedPaths outlines = new ProjectedPaths();
+    private ParallelProjector parallelOutlines;
+    private final ProjectedPaths traceLines = new ProjectedPaths();
+    private final ProjectedPaths[] heatLines = new ProjectedPaths[RouteHeatMap.CLASSES];
+    private LineRaster raster;
+
+    public GlobeRenderer() {
+        for (int c = 0; c < heatLines.length; c++) heatLines[c] = new ProjectedPaths();
+    }
+
+    public LodPyramid getCountries() { return countries; }
+    public void setCountries(LodPyramid countries) { this.countries = countries != null ? countries : new LodPyramid(); }
+
+    public TraceGeometry getTrace() { return trace; }
+    public void setTrace(TraceGeometry trace) { this.trace = trace; }
+
+    public RouteHeatMap getRouteHeatMap() { return heatMap; }
+    public void setRouteHeatMap(RouteHeatMap heatMap) { this.heatMap = heatMap; }
+
+    public boolean isParallelProjection() { return parallelProjection; }
+    public void setParallelProjection(boolean parallel) {
+        if (parallel && parallelOutlines == null) parallelOutlines = new ParallelProjector();
+        this.parallelProjection = parallel;
+    }
+
+    // Graticule and outlines through LineRaster into an image blitted once per frame,
+    // instead of stroking them with Java2D straight into the target
+    public boolean isRasterBackend() { return rasterBackend; }
+    public void setRasterBackend(boolean raster) {
+        if (raster && this.raster == null) {
+            this.raster = new LineRaster();
+            this.raster.setAntialias(rasterAntialias);
+        }
+        this.rasterBackend = raster;
+    }
+
+    // Wu-antialiased raster lines (the default) or aliased ones; applies to the raster
+    // backend, and is kept until it is first switched on
+    public boolean isRasterAntialias() { return rasterAntialias; }
+    public void setRasterAntialias(boolean antialias) {
+        rasterAntialias = antialias;
+        if (raster != null) raster.setAntialias(antialias);
+    }
+
+    // Cheaper graticule and outline level of detail, e.g. while the globe moves
+    public void setCoarse(boolean grid, boolean outlines) {
+        this.coarseGrid = grid;
+        this.coarseOutlines = outlines;
+    }
+
+    // Opacity of the country outlines, for fading them in
+    public void setCountryAlpha(float alpha) { this.countryAlpha = alpha; }
+
+    // Used for the cached background image; null (offscreen / headless) gives a plain RGB image
+    public void setGraphicsConfiguration(GraphicsConfiguration gc) { this.gc = gc; }
+
+    // Counters for the most recently rendered frame
+    public RenderStats getStats() { return stats; }
+
+    // The view of the most recently rendered frame
+    public View getView() { return view; }
+
+    // Draws one frame covering width x height
+    public void render(Graphics2D target, int width, int height, double zoom, double rotationX, double rotationY) {
+        final long frameStart = System.nanoTime();
+        // snapshot of the view for this frame; projection workers only ever read this
+        view.set(width, height, zoom, rotationX, rotationY);
+        stats.reset();
+        stats.raster = rasterBackend;
+        // the raster backend composes the whole frame in its own image
+        Graphics2D g2 = rasterBackend ? raster.begin(width, height) : target;
+        g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+
+        // background, shadow, ocean and atmosphere (cached until resize or zoom)
+        background.paint(g2, view, gc);
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        drawGraticule(g2, coarseGrid ? Graticule.COARSE : Graticule.FINE);
+
+        // countries
+        if (rasterBackend) {
+            raster.setColor(COUNTRY_STROKE, countryAlpha, COUNTRY_STROKE_WIDTH.getLineWidth());
+        } else {
+            g2.setStroke(COUNTRY_STROKE_WIDTH);
+            g2.setColor(COUNTRY_STROKE);
+            if (countryAlpha < 1f) g2.setComposite(AlphaComposite.SrcOver.derive(Math.max(0f, countryAlpha)));
+        }
+        if (countries.levelCount() > 0) {
+            GeometryStore level = countries.level(countries.select(view.radius, coarseOutlines));
+            long t0 = System.nanoTime();
+            stats.parallel = parallelProjection;
+            if (parallelProjection) {
+                parallelOutlines.project(level, view, stats);
+                stats.projectNanos = System.nanoTime() - t0;
+                stats.segmentsDrawn += rasterBackend ? parallelOutlines.draw(raster) : parallelOutlines.draw(g2);
+            } else {
+                outlines.clear();
+                outlines.project(level, view, stats);
+                stats.projectNanos = System.nanoTime() - t0;
+                stats.segmentsDrawn += rasterBackend ? raster.draw(outlines) : outlines.draw(g2);
+            }
+        }
+        g2.setComposite(AlphaComposite.SrcOver);
+
+        // aggregated routes, then the current traceroute on top
+        if (heatMap != null && heatMap.edgeCount() > 0) {
+            drawHeatMap(g2, heatMap);
+        }
+        if (trace != null) {
+            drawTrace(g2, trace);
+        }
+        if (rasterBackend) {
+            // plain SrcOver: with Src, Java2D takes a generic loop for ARGB_PRE to RGB, 3x slower
+            target.drawImage(raster.image(), 0, 0, null);
+        }
+        stats.frameNanos = System.nanoTime() - frameStart;
+    }
+
+    private void drawTrace(Graphics2D g2, TraceGeometry trace) {
+        traceLines.clear();
+        traceLines.project(trace.arcs(), view, stats);
+        g2.setStroke(TRACE_STROKE);
+        g2.setColor(TRACE);
+        stats.segmentsDrawn += traceLines.draw(g2);
+
+        // markers
+        final float[] hops = trace.hops();
+        final int n = trace.hopCount();
+        for (int i = 0; i < n; i++) {
+            double x = hops[i * 3], y = hops[i * 3 + 1], z = hops[i * 3 + 2];
+            if (view.depth(x, y, z) < 0) continue;
+            int mx = view.screenX(x, y, z), my = view.screenY(x, y, z);
+            g2.setColor(i == 0 ? Color.GREEN : (i == n - 1 ? Color.BLUE : Color.ORANGE));
+            g2.fillOval(mx - 5, my - 5, 10, 10);
+            g2.setColor(Color.WHITE);
+            g2.drawOval(mx - 5, my - 5, 10, 10);
+        }
+    }
+
+    // every distinct arc is projected once, into the paths of its weight class; each
+    // class is then drawn with a single stroke, lightest first
+    private void drawHeatMap(Graphics2D g2, RouteHeatMap map) {
+        for (ProjectedPaths p : heatLines) p.clear();
+        final byte[] classes = map.classes();
+        final GeometryStore arcs = map.arcs();
+        for (int i = 0, n = map.edgeCount(); i < n; i++) {
+            heatLines[classes[i]].project(arcs, i, i + 1, view, stats);
+        }
+        for (int c = 0; c < heatLines.length; c++) {
+            g2.setStroke(HEAT_STROKES[c]);
+            g2.setColor(HEAT_COLORS[c]);
+            stats.segmentsDrawn += heatLines[c].draw(g2);
+        }
+    }
+
+    private void drawGraticule(Graphics2D g2, Graticule grid) {
+        gridLines.clear();
+        gridLines.project(grid.lines(), view, stats);
+        gridEmphasis.clear();
+        gridEmphasis.project(grid.emphasis(), view, stats);
+
+        if (rasterBackend) {
+            raster.setColor(GRID, 1f, GRID_STROKE.getLineWidth());
+            stats.segmentsDrawn += raster.draw(gridLines);
+            raster.setColor(GRID, 1f, EMPHASIS_STROKE.getLineWidth());
+            stats.segmentsDrawn += raster.draw(gridEmphasis);
+            return;
+        }
+        g2.setColor(GRID);
+        g2.setStroke(GRID_STROKE);
+        stats.segmentsDrawn += gridLines.draw(g2);
+        g2.setStroke(EMPHASIS_STROKE);
+        stats.segmentsDrawn += gridEmphasis.draw(g2);
+    }
+}
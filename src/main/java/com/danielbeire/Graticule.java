@@ -0,0 +1,42 @@
+package com.danielbeire;
+
+// Latitude/longitude grid as precomputed unit-vector meshes, built once per density.
+// The equator and prime meridian are kept separately so they can be drawn emphasized.
+public final class Graticule {
+
+    // coarse grid while dragging, fine grid otherwise
+    public static final Graticule COARSE = new Graticule(30, 90);
+    public static final Graticule FINE = new Graticule(15, 160);
+
+    private final GeometryStore lines;
+    private final GeometryStore emphasis;
+
+    private Graticule(int stepDeg, int parts) {
+        lines = new GeometryStore((360 / stepDeg + 180 / stepDeg + 2) * (parts + 1), 360 / stepDeg + 180 / stepDeg + 2);
+        for (int lon = -180; lon <= 180; lon += stepDeg) {
+            addGeoLine(lines, lon, -85, lon, 85, parts);
+        }
+        for (int lat = -75; lat <= 75; lat += stepDeg) {
+            addGeoLine(lines, -180, lat, 180, lat, parts);
+        }
+        lines.trimToSize();
+
+        emphasis = new GeometryStore((parts + 1) * 2, 2);
+        addGeoLine(emphasis, -180, 0, 180, 0, parts);
+        addGeoLine(emphasis, 0, -85, 0, 85, parts);
+        emphasis.trimToSize();
+    }
+
+    public GeometryStore lines() { return lines; }
+    public GeometryStore emphasis() { return emphasis; }
+
+    // straight line in lon/lat space, sampled into parts segments
+    private static void addGeoLine(GeometryStore out, double lon1, double lat1, double lon2, double lat2, int parts) {
+        out.beginPath();
+        for (int i = 0; i <= parts; i++) {
+            double t = i / (double) parts;
+            out.addLonLat(lon1 + (lon2 - lon1) * t, lat1 + (lat2 - lat1) * t);
+        }
+        out.endPath();
+    }
+}
@@ -0,0 +1,148 @@
+package com.danielbeire;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+// Renders trace maps to PNG files without a display, e.g. for reports. Needs
+// java.awt.headless=true set before the first AWT class loads (Launcher --render does).
+// Images are rendered on a pool of worker threads, each with its own GlobeRenderer and
+// image; the country outlines and the route heat map are shared read-only between them.
+public class HeadlessRenderer {
+
+    // One image: the trace to draw (may be empty) and the rotation to draw it at
+    public static final class Job {
+        final String name;
+        final List<Point.Double> path;
+        final double rotationX, rotationY;
+
+        public Job(String name, List<Point.Double> path, double rotationX, double rotationY) {
+            this.name = name;
+            this.path = path;
+            this.rotationX = rotationX;
+            this.rotationY = rotationY;
+        }
+    }
+
+    private final LodPyramid countries;
+    private final int width, height, threads;
+    private final double zoom;
+    private RouteHeatMap heatMap;
+
+    public HeadlessRenderer(LodPyramid countries, int width, int height, double zoom, int threads) {
+        this.countries = countries;
+        this.width = width;
+        this.height = height;
+        this.zoom = zoom;
+        this.threads = Math.max(1, threads);
+    }
+
+    // Drawn under every job's trace
+    public void setRouteHeatMap(RouteHeatMap heatMap) {
+        this.heatMap = heatMap;
+    }
+
+    // The trace (lon, lat) turned towards the viewer
+    public static Job facing(String name, List<Point.Double> path) {
+        double x = 0, y = 0, z = 0;
+        for (Point.Double p : path) {
+            double lat = Math.toRadians(p.y), lon = Math.toRadians(p.x);
+            x += Math.cos(lat) * Math.cos(lon);
+            y += Math.sin(lat);
+            z += Math.cos(lat) * Math.sin(lon);
+        }
+        double len = Math.sqrt(x * x + y * y + z * z);
+        if (len < 1e-9) return new Job(name, path, Math.toRadians(20), 0);
+        // inverse of View's viewing direction (sinY cosX, sinX, cosY cosX)
+        return new Job(name, path, Math.asin(y / len), Math.atan2(x / len, z / len));
+    }
+
+    // One full turn of the globe in frames images
+    public static List<Job> spin(int frames) {
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < frames; i++) {
+            jobs.add(new Job("spin", new ArrayList<>(), Math.toRadians(20), 2 * Math.PI * i / frames));
+        }
+        return jobs;
+    }
+
+    // Located hops of every successful trace in a --batch results file, in hop order
+    public static List<Job> readBatchResults(File jsonl) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(jsonl.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                JsonObject o = JsonParser.parseString(line).getAsJsonObject();
+                if (!o.has("hops")) continue;
+                List<Point.Double> path = new ArrayList<>();
+                for (JsonElement e : (JsonArray) o.get("hops")) {
+                    JsonObject h = e.getAsJsonObject();
+                    if (!h.has("lat") || !h.has("lon")) continue;
+                    Point.Double p = new Point.Double(h.get("lon").getAsDouble(), h.get("lat").getAsDouble());
+                    if (path.isEmpty() || !path.get(path.size() - 1).equals(p)) path.add(p);
+                }
+                jobs.add(facing(o.get("target").getAsString(), path));
+            }
+        }
+        return jobs;
+    }
+
+    // Renders every job to outDir/NNNN-name.png; returns the number of images written
+    public int render(List<Job> jobs, File outDir) throws Exception {
+        if (!outDir.isDirectory() && !outDir.mkdirs()) throw new IOException("Cannot create " + outDir);
+        if (heatMap != null) heatMap.classes(); // computed once here, then only read by the workers
+        ThreadLocal<GlobeRenderer> renderers = ThreadLocal.withInitial(() -> {
+            GlobeRenderer r = new GlobeRenderer();
+            r.setCountries(countries);
+            r.setRouteHeatMap(heatMap);
+            r.setRasterBackend("raster".equalsIgnoreCase(AppConfig.get("render.backend", "java2d")));
+            r.setRasterAntialias(AppConfig.getBoolean("render.raster.aa", true));
+            return r;
+        });
+        ThreadLocal<BufferedImage> images = ThreadLocal.withInitial(() -> new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+        AtomicInteger n = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "png-render-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> pending = new ArrayList<>();
+            for (int i = 0; i < jobs.size(); i++) {
+                Job job = jobs.get(i);
+                File out = new File(outDir, String.format("%04d-%s.png", i, job.name.replaceAll("[^A-Za-z0-9._-]", "_")));
+                pending.add(pool.submit(() -> {
+                    GlobeRenderer r = renderers.get();
+                    r.setTrace(job.path.isEmpty() ? null : TraceGeometry.of(job.path));
+                    BufferedImage img = images.get();
+                    Graphics2D g2 = img.createGraphics();
+                    r.render(g2, width, height, zoom, job.rotationX, job.rotationY);
+                    g2.dispose();
+                    ImageIO.write(img, "png", out);
+                    return null;
+                }));
+            }
+            for (Future<?> f : pending) f.get();
+        } finally {
+            pool.shutdown();
+        }
+        return jobs.size();
+    }
+}
@@ -0,0 +1,114 @@
+package com.danielbeire;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Distribution of non-negative values (nanoseconds, batch sizes) in log-linear buckets:
+// exact below 8, then 8 buckets per power of two, so quantiles are within 1/16 of the
+// true value. record() is lock-free and allocation-free, so it can sit on the paint path.
+public class Histogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    private volatile long last;
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        last = value;
+        long m;
+        while (value > (m = max.get()) && !max.compareAndSet(m, value)) { }
+    }
+
+    public long count() { return count.get(); }
+    public long last() { return last; }
+    public long max() { return max.get(); }
+
+    public double mean() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / (double) n;
+    }
+
+    // Value at quantile q (0..1): the middle of the bucket holding it, 0 when empty
+    public long quantile(double q) {
+        long n = count.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * n)), seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts.get(b);
+            if (seen >= rank) return Math.min(max.get(), lowerBound(b) + (width(b) - 1) / 2);
+        }
+        return max.get();
+    }
+
+    // Concurrent record() calls may land on either side of a reset
+    public void reset() {
+        for (int b = 0; b < BUCKETS; b++) counts.set(b, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+        last = 0;
+    }
+
+    // Copy in display units, e.g. 1e-6 for nanoseconds as milliseconds
+    public Snapshot snapshot(double scale) {
+        return new Snapshot(count(), mean() * scale, quantile(0.5) * scale, quantile(0.95) * scale,
+                quantile(0.99) * scale, max() * scale, last() * scale);
+    }
+
+    static int bucket(long v) {
+        if (v < SUB) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB - 1);
+        return (exp - SUB_BITS + 1) * SUB + sub;
+    }
+
+    static long lowerBound(int b) {
+        if (b < SUB) return b;
+        int exp = b / SUB + SUB_BITS - 1;
+        return (long) (SUB + b % SUB) << (exp - SUB_BITS);
+    }
+
+    static long width(int b) {
+        return b < SUB ? 1 : 1L << (b / SUB - 1);
+    }
+
+    // Open-type friendly view for JMX: shows up as a composite with one field per getter
+    public static class Snapshot {
+        private final long count;
+        private final double mean, p50, p95, p99, max, last;
+
+        @ConstructorProperties({"count", "mean", "p50", "p95", "p99", "max", "last"})
+        public Snapshot(long count, double mean, double p50, double p95, double p99, double max, double last) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+            this.max = max;
+            this.last = last;
+        }
+
+        public long getCount() { return count; }
+        public double getMean() { return mean; }
+        public double getP50() { return p50; }
+        public double getP95() { return p95; }
+        public double getP99() { return p99; }
+        public double getMax() { return max; }
+        public double getLast() { return last; }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d mean=%.2f p50=%.2f p95=%.2f p99=%.2f max=%.2f", count, mean, p50, p95, p99, max);
+        }
+    }
+}
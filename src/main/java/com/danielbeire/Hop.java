@@ -0,0 +1,145 @@
+package com.danielbeire;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+// One TTL of a traceroute: the probes sent, their round-trip times and which address
+// answered each of them. A TTL can have several responders (load-balanced paths) or
+// none (all probes timed out). Addresses are kept as text (IPv4 or IPv6).
+//
+// HopParser reuses a single Hop per line; listeners that keep it must copy() it.
+public final class Hop {
+
+    private int ttl;
+    private int probes;
+    private float[] rtts = new float[4];          // per probe, NaN if it timed out
+    private int[] probeResponder = new int[4];    // per probe, index into responders or -1
+    private int responderCount;
+    private char[] chars = new char[64];          // responder addresses, back to back
+    private int[] responderEnd = new int[4];      // end of each address in chars
+    private int charCount;
+
+    public int ttl() { return ttl; }
+    public int probeCount() { return probes; }
+    public int responderCount() { return responderCount; }
+
+    // RTT of probe i in ms, NaN if it timed out
+    public float rtt(int i) { return rtts[i]; }
+
+    // Responder index that answered probe i, or -1
+    public int probeResponder(int i) { return probeResponder[i]; }
+
+    public int lost() {
+        int n = 0;
+        for (int i = 0; i < probes; i++) if (Float.isNaN(rtts[i])) n++;
+        return n;
+    }
+
+    // Fraction of probes that timed out, 0..1
+    public double loss() {
+        return probes == 0 ? 0 : (double) lost() / probes;
+    }
+
+    // Mean RTT of the answered probes in ms, NaN if none answered
+    public double avgRtt() {
+        double sum = 0;
+        int n = 0;
+        for (int i = 0; i < probes; i++) {
+            if (!Float.isNaN(rtts[i])) { sum += rtts[i]; n++; }
+        }
+        return n == 0 ? Double.NaN : sum / n;
+    }
+
+    public String responder(int i) {
+        int start = i == 0 ? 0 : responderEnd[i - 1];
+        return new String(chars, start, responderEnd[i] - start);
+    }
+
+    // First responder's address, or null if every probe timed out
+    public String address() {
+        return responderCount == 0 ? null : responder(0);
+    }
+
+    public boolean isIpv6(int i) {
+        int start = i == 0 ? 0 : responderEnd[i - 1];
+        for (int k = start; k < responderEnd[i]; k++) if (chars[k] == ':') return true;
+        return false;
+    }
+
+    // IPv4 responder as an unsigned value (see GeoIpIndex.parseIpv4), -1 for IPv6
+    public long ipv4(int i) {
+        int start = i == 0 ? 0 : responderEnd[i - 1];
+        return GeoIpIndex.parseIpv4(CharBuffer.wrap(chars), start, responderEnd[i]);
+    }
+
+    public Hop copy() {
+        Hop h = new Hop();
+        h.ttl = ttl;
+        h.probes = probes;
+        h.rtts = Arrays.copyOf(rtts, probes);
+        h.probeResponder = Arrays.copyOf(probeResponder, probes);
+        h.responderCount = responderCount;
+        h.chars = Arrays.copyOf(chars, charCount);
+        h.responderEnd = Arrays.copyOf(responderEnd, responderCount);
+        h.charCount = charCount;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(ttl);
+        for (int r = 0; r < responderCount; r++) sb.append(r == 0 ? "  " : ", ").append(responder(r));
+        for (int i = 0; i < probes; i++) {
+            sb.append(Float.isNaN(rtts[i]) ? "  *" : String.format("  %.3f ms", rtts[i]));
+        }
+        return sb.toString();
+    }
+
+    // --- filled in by HopParser ---
+
+    void reset(int ttl) {
+        this.ttl = ttl;
+        probes = 0;
+        responderCount = 0;
+        charCount = 0;
+    }
+
+    void addProbe(float rtt, int responder) {
+        if (probes == rtts.length) {
+            rtts = Arrays.copyOf(rtts, probes * 2);
+            probeResponder = Arrays.copyOf(probeResponder, probes * 2);
+        }
+        rtts[probes] = rtt;
+        probeResponder[probes] = responder;
+        probes++;
+    }
+
+    // Adds an address (unless already listed) and returns its index
+    int addResponder(char[] s, int from, int to) {
+        int len = to - from;
+        for (int r = 0, start = 0; r < responderCount; start = responderEnd[r++]) {
+            if (responderEnd[r] - start != len) continue;
+            int k = 0;
+            while (k < len && chars[start + k] == s[from + k]) k++;
+            if (k == len) return r;
+        }
+        if (charCount + len > chars.length) chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + len));
+        if (responderCount == responderEnd.length) responderEnd = Arrays.copyOf(responderEnd, responderCount * 2);
+        System.arraycopy(s, from, chars, charCount, len);
+        charCount += len;
+        responderEnd[responderCount] = charCount;
+        return responderCount++;
+    }
+
+    int addResponder(String address) {
+        return addResponder(address.toCharArray(), 0, address.length());
+    }
+
+    // Probes answered before their address was printed (tracert) belong to responder r
+    void assignPending(int r) {
+        for (int i = 0; i < probes; i++) {
+            if (probeResponder[i] < 0 && !Float.isNaN(rtts[i])) probeResponder[i] = r;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.danielbeire;
+
+import java.awt.Point;
+import java.util.concurrent.CompletableFuture;
+
+// Geolocates the hops of one trace while it is still running. Lookups go through a
+// GeoBatcher (its own, or one shared with other traces) and results are reported in
+// submission order, one per hop.
+public class HopGeolocator implements AutoCloseable {
+
+    public interface Listener {
+        // where is null if the ip could not be located
+        void located(String ip, Point.Double where);
+    }
+
+    private final GeoBatcher batcher;
+    private final boolean ownBatcher;
+    private final Listener listener;
+    // completes when every hop so far has been reported; only touched by the submitting thread
+    private CompletableFuture<Void> reported = CompletableFuture.completedFuture(null);
+    private volatile Throwable failure;
+
+    public HopGeolocator(geoIP geo, Listener listener) {
+        this(new GeoBatcher(geo), true, listener);
+    }
+
+    public HopGeolocator(GeoBatcher shared, Listener listener) {
+        this(shared, false, listener);
+    }
+
+    private HopGeolocator(GeoBatcher batcher, boolean ownBatcher, Listener listener) {
+        this.batcher = batcher;
+        this.ownBatcher = ownBatcher;
+        this.listener = listener;
+    }
+
+    public void submit(String ip) {
+        CompletableFuture<Point.Double> where = batcher.submit(ip).exceptionally(e -> {
+            if (failure == null) failure = e.getCause() != null ? e.getCause() : e;
+            return null;
+        });
+        reported = reported.thenCombine(where, (done, w) -> {
+            listener.located(ip, w);
+            return null;
+        });
+    }
+
+    // Waits until every submitted hop has been reported. Rethrows the first lookup failure.
+    @Override
+    public void close() throws Exception {
+        if (ownBatcher) batcher.close();
+        reported.join();
+        if (failure instanceof Exception) throw (Exception) failure;
+        if (failure != null) throw new RuntimeException(failure);
+    }
+}
@@ -0,0 +1,220 @@
+package com.danielbeire;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Parses Linux traceroute and Windows tracert output into Hops, without regex and
+// without allocating per line: lines are scanned in place in a char buffer and
+// written into one reused Hop. Handles "* * *" timeouts, several responders per TTL,
+// "host (addr)" / "host [addr]" / bare addresses, "<1 ms", IPv4 and IPv6.
+//
+//  Linux:   " 3  r1.example.net (10.0.0.1)  5.1 ms 10.0.0.2 (10.0.0.2)  5.3 ms *"
+//  Windows: "  3    10 ms     *       11 ms  r1.example.net [10.0.0.1]"
+public class HopParser {
+
+    public interface Listener {
+        // hop is reused for the next line; copy() it to keep it
+        void hop(Hop hop);
+
+        // "traceroute to x" / "Tracing route to x" header; separates traces in a recording
+        default void traceStarted(String destination) { }
+    }
+
+    private final Hop hop = new Hop();
+    private char[] buf = new char[1 << 16];
+    private long lines;
+
+    public long lineCount() { return lines; }
+
+    // Parses every line from in; returns the number of hops reported.
+    public long parse(Reader in, Listener listener) throws IOException {
+        long hops = 0;
+        int len = 0;
+        while (true) {
+            if (len == buf.length) buf = Arrays.copyOf(buf, buf.length * 2); // line longer than the buffer
+            int n = in.read(buf, len, buf.length - len);
+            if (n < 0) break;
+            len += n;
+            int start = 0;
+            for (int i = start; i < len; i++) {
+                if (buf[i] != '\n') continue;
+                if (parseLine(buf, start, i, listener)) hops++;
+                start = i + 1;
+            }
+            // keep the unfinished last line for the next read
+            System.arraycopy(buf, start, buf, 0, len - start);
+            len -= start;
+        }
+        if (len > 0 && parseLine(buf, 0, len, listener)) hops++;
+        return hops;
+    }
+
+    // Line by line, for output that is also shown: every line goes to onOutput, every
+    // hop (copied) to onHop and the returned list. delayMillis paces replays.
+    public List<Hop> readLines(BufferedReader reader, Consumer<String> onOutput, Consumer<Hop> onHop,
+                               int delayMillis) throws IOException, InterruptedException {
+        List<Hop> hops = new ArrayList<>();
+        Listener listener = hop -> {
+            Hop h = hop.copy();
+            hops.add(h);
+            if (onHop != null) onHop.accept(h);
+        };
+        String line;
+        while ((line = reader.readLine()) != null) {
+            onOutput.accept(line);
+            parseLine(line, listener);
+            if (delayMillis > 0) Thread.sleep(delayMillis);
+        }
+        return hops;
+    }
+
+    // Parses one line; returns true if it was a hop and listener.hop was called.
+    public boolean parseLine(CharSequence line, Listener listener) {
+        int len = line.length();
+        if (len > buf.length) buf = new char[Math.max(len, buf.length * 2)];
+        for (int i = 0; i < len; i++) buf[i] = line.charAt(i);
+        return parseLine(buf, 0, len, listener);
+    }
+
+    private boolean parseLine(char[] b, int from, int to, Listener listener) {
+        lines++;
+        if (to > from && b[to - 1] == '\r') to--;
+        int i = skipSpaces(b, from, to);
+
+        // leading TTL, or a header line
+        int ttl = 0, s = i;
+        while (i < to && b[i] >= '0' && b[i] <= '9' && i - s < 4) ttl = ttl * 10 + (b[i++] - '0');
+        if (i == s || i == to || !isSpace(b[i])) {
+            if (startsWith(b, s, to, "traceroute to ") || startsWith(b, s, to, "traceroute6 to ")
+                    || startsWith(b, s, to, "Tracing route to ")) {
+                int t = s;
+                while (b[t] != 't' || b[t + 1] != 'o' || b[t + 2] != ' ') t++;
+                t = skipSpaces(b, t + 3, to);
+                int e = t;
+                while (e < to && !isSpace(b[e]) && b[e] != ',') e++;
+                listener.traceStarted(new String(b, t, e - t));
+            }
+            return false;
+        }
+
+        hop.reset(ttl);
+        int current = -1;
+        while (true) {
+            i = skipSpaces(b, i, to);
+            if (i >= to) break;
+            s = i;
+            while (i < to && !isSpace(b[i])) i++;
+            int e = i;
+
+            if (e - s == 1 && b[s] == '*') {
+                hop.addProbe(Float.NaN, -1);
+                continue;
+            }
+
+            // "5.123 ms", "<1 ms", "5ms"
+            int ns = b[s] == '<' ? s + 1 : s;
+            int ne = e - 2 > ns && b[e - 2] == 'm' && b[e - 1] == 's' ? e - 2 : e;
+            if (isNumber(b, ns, ne)) {
+                boolean unit = ne < e;
+                if (!unit) {
+                    int u = skipSpaces(b, i, to);
+                    if (u + 1 < to && b[u] == 'm' && b[u + 1] == 's' && (u + 2 == to || isSpace(b[u + 2]))) {
+                        unit = true;
+                        i = u + 2;
+                    }
+                }
+                if (unit) {
+                    hop.addProbe(parseNumber(b, ns, ne), current);
+                    continue;
+                }
+            }
+
+            // addresses, bare or wrapped as "(addr)" / "[addr]"; anything else is a
+            // host name, an annotation (!H, !N) or text like "Request timed out."
+            if (e - s > 2 && (b[s] == '(' || b[s] == '[') && (b[e - 1] == ')' || b[e - 1] == ']')) {
+                s++;
+                e--;
+            }
+            if (isIpv4(b, s, e) || isIpv6(b, s, e)) {
+                current = hop.addResponder(b, s, e);
+                hop.assignPending(current);
+            }
+        }
+        listener.hop(hop);
+        return true;
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static int skipSpaces(char[] b, int i, int to) {
+        while (i < to && isSpace(b[i])) i++;
+        return i;
+    }
+
+    private static boolean startsWith(char[] b, int from, int to, String prefix) {
+        if (to - from < prefix.length()) return false;
+        for (int k = 0; k < prefix.length(); k++) if (b[from + k] != prefix.charAt(k)) return false;
+        return true;
+    }
+
+    // digits with at most one '.'
+    private static boolean isNumber(char[] b, int from, int to) {
+        if (from >= to) return false;
+        int dots = 0;
+        for (int k = from; k < to; k++) {
+            char c = b[k];
+            if (c == '.') { if (++dots > 1) return false; }
+            else if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    private static float parseNumber(char[] b, int from, int to) {
+        long mantissa = 0;
+        int scale = -1;
+        for (int k = from; k < to; k++) {
+            if (b[k] == '.') { scale = 0; continue; }
+            mantissa = mantissa * 10 + (b[k] - '0');
+            if (scale >= 0) scale++;
+        }
+        double v = mantissa;
+        for (int k = 0; k < scale; k++) v /= 10;
+        return (float) v;
+    }
+
+    private static boolean isIpv4(char[] b, int from, int to) {
+        int dots = 0, digits = 0, octet = 0;
+        for (int k = from; k < to; k++) {
+            char c = b[k];
+            if (c >= '0' && c <= '9') {
+                octet = octet * 10 + (c - '0');
+                if (++digits > 3 || octet > 255) return false;
+            } else if (c == '.' && digits > 0 && dots < 3) {
+                dots++;
+                digits = 0;
+                octet = 0;
+            } else {
+                return false;
+            }
+        }
+        return dots == 3 && digits > 0;
+    }
+
+    // hex groups separated by ':' (at least two colons), optionally ending in IPv4
+    private static boolean isIpv6(char[] b, int from, int to) {
+        int colons = 0;
+        for (int k = from; k < to; k++) {
+            char c = b[k];
+            if (c == ':') colons++;
+            else if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F' || c == '.')) return false;
+        }
+        return colons >= 2 && to - from <= 45;
+    }
+}
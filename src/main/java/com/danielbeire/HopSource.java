@@ -0,0 +1,13 @@
+package com.danielbeire;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+// Where hops come from: the system traceroute, parallel per-TTL probes, or a recording.
+// Selected with -Dtv.trace.source (see Traceroute.source).
+public interface HopSource {
+
+    // Traces target. Output lines go to onOutput and hops to onHop, in TTL order, as
+    // soon as they are known. Returns all hops.
+    List<Hop> trace(String target, Consumer<String> onOutput, Consumer<Hop> onHop) throws Exception;
+}
@@ -0,0 +1,175 @@
+package com.danielbeire;
+
+import com.google.gson.*;
+import java.awt.Point;
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Online lookups through the ip-api.com batch endpoint. Queries are split into chunks of
+// at most 100 IPs (the endpoint's limit) and sent concurrently on a small pool. Requests
+// are paced by the X-Rl (requests left) and X-Ttl (seconds until the window resets)
+// headers, and a 429 waits out the window and retries. Responses are read to the end so
+// HttpURLConnection can keep the connection alive for the next request.
+//
+// -Dtv.geoip.url (endpoint), -Dtv.geoip.http.threads (concurrent requests)
+public class HttpGeoEngine implements GeoEngine {
+
+    private static final Gson GSON = new Gson();
+    private static final int CHUNK = 100;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final String endpoint;
+    private final ExecutorService pool;
+
+    // rate-limit window as last reported by the server
+    private final Object rateLock = new Object();
+    private int remaining = Integer.MAX_VALUE;
+    private long resetAtMillis;
+    private int inFlight;
+
+    public HttpGeoEngine() {
+        this(AppConfig.get("geoip.url", "http://ip-api.com/batch"), AppConfig.getInt("geoip.http.threads", 4));
+    }
+
+    public HttpGeoEngine(String endpoint, int threads) {
+        // only ask for the fields we use; answers are matched back by "query"
+        this.endpoint = endpoint + (endpoint.contains("?") ? "&" : "?") + "fields=status,lat,lon,query";
+        AtomicInteger n = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "geoip-http-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public Map<String, Point.Double> locate(List<String> ips) throws Exception {
+        Map<String, Point.Double> out = new HashMap<>();
+        if (ips.isEmpty()) return out;
+
+        List<Future<Map<String, Point.Double>>> chunks = new ArrayList<>();
+        for (int i = 0; i < ips.size(); i += CHUNK) {
+            List<String> chunk = ips.subList(i, Math.min(ips.size(), i + CHUNK));
+            chunks.add(pool.submit(() -> post(chunk)));
+        }
+
+        // keep what succeeded; only fail if nothing did
+        Exception failure = null;
+        for (Future<Map<String, Point.Double>> f : chunks) {
+            try {
+                out.putAll(f.get());
+            } catch (Exception e) {
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null) {
+            if (out.isEmpty()) throw failure;
+            System.err.println("GeoIP batch partly failed: " + failure.getMessage());
+        }
+        return out;
+    }
+
+    private Map<String, Point.Double> post(List<String> ips) throws Exception {
+        List<Map<String,String>> body = new ArrayList<>();
+        for (String ip : ips) body.add(Collections.singletonMap("query", ip));
+        byte[] json = GSON.toJson(body).getBytes(StandardCharsets.UTF_8);
+
+        for (int attempt = 1; ; attempt++) {
+            acquire();
+            try {
+                HttpURLConnection con = (HttpURLConnection) new URL(endpoint).openConnection();
+                con.setRequestMethod("POST");
+                con.setDoOutput(true);
+                con.setConnectTimeout(5000);
+                con.setReadTimeout(15000);
+                con.setFixedLengthStreamingMode(json.length);
+                con.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+                try (OutputStream os = con.getOutputStream()) {
+                    os.write(json);
+                }
+
+                int code = con.getResponseCode();
+                updateRateLimit(con, code == 429);
+                if (code == 200) {
+                    try (Reader in = new BufferedReader(new InputStreamReader(con.getInputStream(), StandardCharsets.UTF_8))) {
+                        return parse(JsonParser.parseReader(in).getAsJsonArray(), ips);
+                    }
+                }
+                drain(con.getErrorStream());
+                if (code != 429 || attempt >= MAX_ATTEMPTS) throw new IOException("GeoIP batch failed: HTTP " + code);
+            } finally {
+                release();
+            }
+        }
+    }
+
+    private static Map<String, Point.Double> parse(JsonArray arr, List<String> ips) {
+        Map<String, Point.Double> out = new HashMap<>();
+        for (int i = 0; i < arr.size(); i++) {
+            JsonObject o = arr.get(i).getAsJsonObject();
+            String ip = o.has("query") ? o.get("query").getAsString() : ips.get(i);
+            if ("success".equals(o.get("status").getAsString())) {
+                double lat = o.get("lat").getAsDouble();
+                double lon = o.get("lon").getAsDouble();
+                out.put(ip, new Point.Double(lon, lat)); // (lon, lat)
+            } else {
+                out.put(ip, null);
+            }
+        }
+        return out;
+    }
+
+    // Blocks while the current window is used up.
+    private void acquire() throws InterruptedException {
+        synchronized (rateLock) {
+            long wait;
+            while (remaining <= 0 && (wait = resetAtMillis - System.currentTimeMillis()) > 0) rateLock.wait(wait);
+            // window has reset; the real allowance arrives with the next response
+            if (remaining <= 0) remaining = 1;
+            remaining--;
+            inFlight++;
+        }
+    }
+
+    private void release() {
+        synchronized (rateLock) {
+            inFlight--;
+        }
+    }
+
+    private void updateRateLimit(HttpURLConnection con, boolean limited) {
+        String rl = con.getHeaderField("X-Rl"), ttl = con.getHeaderField("X-Ttl");
+        long now = System.currentTimeMillis();
+        synchronized (rateLock) {
+            try {
+                if (ttl != null) resetAtMillis = now + Long.parseLong(ttl.trim()) * 1000;
+                // requests still in flight were granted before this answer was sent
+                if (rl != null) remaining = Integer.parseInt(rl.trim()) - (inFlight - 1);
+            } catch (NumberFormatException ignored) {
+                // malformed headers: keep the previous window
+            }
+            if (limited) {
+                remaining = 0;
+                if (resetAtMillis <= now) resetAtMillis = now + 1000;
+            }
+            rateLock.notifyAll();
+        }
+    }
+
+    // reading the body to the end lets the connection be reused
+    private static void drain(InputStream in) {
+        if (in == null) return;
+        try (InputStream s = in) {
+            byte[] buf = new byte[1024];
+            while (s.read(buf) >= 0) { }
+        } catch (IOException ignored) {
+        }
+    }
+}
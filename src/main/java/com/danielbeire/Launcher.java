@@ -0,0 +1,213 @@
+package com.danielbeire;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// Entry point. The command line modes run without a display: java.awt.headless is set here,
+// before anything loads an AWT class (Main is a JFrame, so loading it would initialise
+// the display toolkit), and only a plain launch hands off to the window. Keep AWT types
+// out of this class.
+public class Launcher {
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "";
+        if (mode.equals("--import-geoip") || mode.equals("--batch") || mode.equals("--history")
+                || mode.equals("--render") || mode.equals("--replay")) {
+            System.setProperty("java.awt.headless", "true");
+        }
+        if (mode.equals("--import-geoip")) {
+            importGeoIp(args);
+            return;
+        }
+        if (mode.equals("--batch")) {
+            System.exit(batch(args) == 0 ? 0 : 1);
+        }
+        if (mode.equals("--history")) {
+            history(args);
+            return;
+        }
+        if (mode.equals("--render")) {
+            render(args);
+            return;
+        }
+        if (mode.equals("--replay")) {
+            replay(args);
+            return;
+        }
+        Main.main(args);
+    }
+
+    // --import-geoip <ranges.csv> [out.bin] [--lat-col N] [--lon-col N]  (columns are 0-based)
+    private static void importGeoIp(String[] args) throws Exception {
+        File csv = null, out = null;
+        int latCol = 2, lonCol = 3;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--lat-col") && i + 1 < args.length) latCol = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--lon-col") && i + 1 < args.length) lonCol = Integer.parseInt(args[++i]);
+            else if (csv == null) csv = new File(args[i]);
+            else out = new File(args[i]);
+        }
+        if (csv == null) {
+            System.err.println("usage: --import-geoip <ranges.csv> [out.bin] [--lat-col N] [--lon-col N]");
+            System.exit(2);
+        }
+        if (out == null) out = LocalGeoEngine.defaultDatabase();
+        long t0 = System.nanoTime();
+        int n = GeoIpIndex.importCsv(csv, out, latCol, lonCol);
+        System.out.printf("Imported %d ranges into %s in %d ms%n", n, out, (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    // --replay [--quiet] <file>...  parses recorded traceroute/tracert output and prints the hops
+    private static void replay(String[] args) throws Exception {
+        boolean quiet = false;
+        long hops = 0, bytes = 0;
+        long t0 = System.nanoTime();
+        PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+        HopParser parser = new HopParser();
+        HopParser.Listener printer = new HopParser.Listener() {
+            @Override public void hop(Hop hop) { out.println(hop); }
+            @Override public void traceStarted(String destination) { out.println("# " + destination); }
+        };
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--quiet")) { quiet = true; continue; }
+            File f = new File(args[i]);
+            try (Reader r = new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8)) {
+                hops += parser.parse(r, quiet ? hop -> { } : printer);
+            }
+            bytes += f.length();
+        }
+        out.flush();
+        long lines = parser.lineCount();
+        double secs = (System.nanoTime() - t0) / 1e9;
+        System.err.printf("%d lines, %d hops in %.2f s (%.0f lines/s, %.1f MB/s)%n",
+                lines, hops, secs, lines / secs, bytes / secs / 1e6);
+    }
+
+    // --batch <targets.txt|-> [--out results.jsonl] [--concurrency N]; JSON lines go to stdout without --out.
+    // Returns the number of failed traces.
+    private static int batch(String[] args) throws Exception {
+        String targets = null, outFile = null;
+        int concurrency = AppConfig.getInt("batch.concurrency", 16);
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--out") && i + 1 < args.length) outFile = args[++i];
+            else if (args[i].equals("--concurrency") && i + 1 < args.length) concurrency = Integer.parseInt(args[++i]);
+            else targets = args[i];
+        }
+        if (targets == null) {
+            System.err.println("usage: --batch <targets.txt|-> [--out results.jsonl] [--concurrency N]");
+            return 2;
+        }
+        List<String> list = targets.equals("-")
+                ? BatchTracer.readTargets(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)))
+                : BatchTracer.readTargets(new File(targets));
+        System.err.printf("Tracing %d targets, %d at a time (%s threads)%n",
+                list.size(), concurrency, BatchTracer.virtualThreads() ? "virtual" : "platform");
+
+        Metrics.register();
+        long t0 = System.nanoTime();
+        int failed;
+        try (Writer out = outFile != null
+                ? Files.newBufferedWriter(new File(outFile).toPath(), StandardCharsets.UTF_8)
+                : new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8)) {
+            failed = new BatchTracer(concurrency).run(list, out, null);
+        }
+        geoIP.saveCache();
+        System.err.printf("%d traces (%d failed) in %.1f s; %s%n",
+                list.size(), failed, (System.nanoTime() - t0) / 1e9, geoIP.cache());
+        System.err.println("traceroute ms: " + Metrics.TRACEROUTE.snapshot(1e-6));
+        System.err.println("geolocation ms: " + Metrics.GEOLOCATION.snapshot(1e-6));
+        System.err.println("geoip request ms: " + Metrics.GEOIP_REQUEST.snapshot(1e-6) + ", batch size: " + Metrics.GEOIP_BATCH.snapshot(1));
+        return failed;
+    }
+
+    // --render [--out DIR] [--size WxH] [--zoom Z] [--threads N] [--spin FRAMES] <results.jsonl>...
+    // --render [...] --history [target]
+    // One PNG per trace from --batch results, or per stored run (the latest to each
+    // destination without a target). With --spin the globe makes one full turn in FRAMES
+    // images instead, with the traces overlaid as a route map.
+    private static void render(String[] args) throws Exception {
+        File outDir = new File("render");
+        int width = 1200, height = 900, frames = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        double zoom = 1.0;
+        boolean fromHistory = false;
+        String target = null;
+        List<File> inputs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--out") && i + 1 < args.length) outDir = new File(args[++i]);
+            else if (args[i].equals("--zoom") && i + 1 < args.length) zoom = Double.parseDouble(args[++i]);
+            else if (args[i].equals("--threads") && i + 1 < args.length) threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--spin") && i + 1 < args.length) frames = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--size") && i + 1 < args.length) {
+                String[] wh = args[++i].split("x");
+                width = Integer.parseInt(wh[0]);
+                height = Integer.parseInt(wh[1]);
+            }
+            else if (args[i].equals("--history")) fromHistory = true;
+            else if (fromHistory) target = args[i];
+            else inputs.add(new File(args[i]));
+        }
+        if (!fromHistory && inputs.isEmpty() && frames == 0) {
+            System.err.println("usage: --render [--out DIR] [--size WxH] [--zoom Z] [--threads N] [--spin FRAMES]"
+                    + " (<results.jsonl>... | --history [target])");
+            System.exit(2);
+        }
+
+        List<HeadlessRenderer.Job> traces = new ArrayList<>();
+        for (File f : inputs) traces.addAll(HeadlessRenderer.readBatchResults(f));
+        if (fromHistory) {
+            TraceStore store = TraceStore.shared();
+            List<TraceRecord> runs = new ArrayList<>();
+            if (target != null) runs.addAll(store.history(target));
+            else for (String d : store.destinations()) runs.add(store.latest(d));
+            for (TraceRecord r : runs) traces.add(HeadlessRenderer.facing(r.target() + "-" + r.timeMillis(), r.path()));
+        }
+
+        HeadlessRenderer renderer = new HeadlessRenderer(GlobeAsset.load(), width, height, zoom, threads);
+        List<HeadlessRenderer.Job> jobs = traces;
+        if (frames > 0) {
+            RouteHeatMap heatMap = new RouteHeatMap();
+            for (HeadlessRenderer.Job j : traces) heatMap.add(j.path);
+            renderer.setRouteHeatMap(heatMap);
+            jobs = HeadlessRenderer.spin(frames);
+        }
+        long t0 = System.nanoTime();
+        int n = renderer.render(jobs, outDir);
+        double secs = (System.nanoTime() - t0) / 1e9;
+        System.err.printf("%d images (%dx%d) in %.2f s on %d threads: %.1f images/s -> %s%n",
+                n, width, height, secs, threads, n / secs, outDir);
+    }
+
+    // --history              destinations with their number of stored runs
+    // --history <target>     route changes for target, oldest first
+    private static void history(String[] args) throws Exception {
+        TraceStore store = TraceStore.shared();
+        if (args.length < 2) {
+            for (String target : store.destinations()) {
+                System.out.printf("%-40s %d runs%n", target, store.history(target).size());
+            }
+            return;
+        }
+        List<TraceRecord> runs = store.history(args[1]);
+        System.out.printf("%d runs to %s%n", runs.size(), args[1]);
+        if (!runs.isEmpty()) System.out.println("first:   " + runs.get(0));
+        for (RouteDiff d : store.changes(args[1])) {
+            System.out.println(Instant.ofEpochMilli(d.after.timeMillis()) + "  " + d);
+        }
+        if (!runs.isEmpty()) System.out.println("latest:  " + runs.get(runs.size() - 1));
+    }
+}
@@ -0,0 +1,130 @@
+package com.danielbeire;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+// Software line renderer for the thin layers with many short segments (graticule and
+// country outlines). Projected runs are rasterized straight into the int[] of a
+// TYPE_INT_ARGB_PRE image with one blend per pixel, instead of building a Path2D for
+// Java2D to stroke. Lines are one pixel wide: Wu-antialiased, or plain Bresenham with
+// antialiasing off. The finished image is blitted to the screen once per frame.
+public class LineRaster {
+
+    private BufferedImage image;
+    private Graphics2D g2;
+    private int[] pixels;
+    private int width, height;
+    private boolean antialias = true;
+
+    // current colour as (0, r, 0, b) and (0, 255, 0, g), scaled by alpha when blending
+    private int rb, ag;
+    private int alpha;  // 0..255, colour alpha times opacity
+    private int gain;   // stroke width in 8.8 fixed point; a wider line shows as more coverage
+
+    // Sizes the image for a frame and returns a Graphics2D for the layers Java2D still
+    // draws (background, heat map, trace). Reused from frame to frame.
+    public Graphics2D begin(int width, int height) {
+        width = Math.max(1, width);
+        height = Math.max(1, height);
+        if (image == null || this.width != width || this.height != height) {
+            if (g2 != null) g2.dispose();
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            g2 = image.createGraphics();
+            this.width = width;
+            this.height = height;
+        }
+        return g2;
+    }
+
+    public BufferedImage image() { return image; }
+
+    public boolean isAntialias() { return antialias; }
+    public void setAntialias(boolean antialias) { this.antialias = antialias; }
+
+    public void setColor(Color c, float opacity, float strokeWidth) {
+        rb = c.getRed() << 16 | c.getBlue();
+        ag = 0xFF << 16 | c.getGreen();
+        alpha = Math.round(c.getAlpha() * Math.max(0f, Math.min(1f, opacity)));
+        gain = Math.round(strokeWidth * 256);
+    }
+
+    // Draws every run of p in the current colour; returns the number of segments drawn.
+    // Segments leave out their end point so shared vertices are not blended twice.
+    public int draw(ProjectedPaths p) {
+        int segments = p.segmentCount();
+        if (alpha == 0) return segments;
+        final int[] xs = p.xs(), ys = p.ys();
+        for (int r = 0, n = p.runCount(); r < n; r++) {
+            int s = p.runStart(r), e = p.runEnd(r);
+            for (int i = s + 1; i < e; i++) {
+                if (antialias) wuLine(xs[i - 1], ys[i - 1], xs[i], ys[i]);
+                else line(xs[i - 1], ys[i - 1], xs[i], ys[i]);
+            }
+            plot(xs[e - 1], ys[e - 1], antialias ? coverage(255) : alpha);
+        }
+        return segments;
+    }
+
+    // Bresenham, every pixel at the full colour alpha
+    private void line(int x0, int y0, int x1, int y1) {
+        if (outside(x0, y0, x1, y1)) return;
+        int dx = Math.abs(x1 - x0), dy = -Math.abs(y1 - y0);
+        int sx = x0 < x1 ? 1 : -1, sy = y0 < y1 ? 1 : -1;
+        int err = dx + dy;
+        final int a = alpha;
+        while (x0 != x1 || y0 != y1) {
+            plot(x0, y0, a);
+            int e2 = 2 * err;
+            if (e2 >= dy) { err += dy; x0 += sx; }
+            if (e2 <= dx) { err += dx; y0 += sy; }
+        }
+    }
+
+    // Xiaolin Wu: each step of the major axis covers two pixels of the minor axis,
+    // split by the fractional position of the ideal line (16.16 fixed point)
+    private void wuLine(int x0, int y0, int x1, int y1) {
+        if (outside(x0, y0, x1, y1)) return;
+        int dx = x1 - x0, dy = y1 - y0;
+        if (Math.abs(dx) >= Math.abs(dy)) {
+            if (dx == 0) return;
+            int steps = Math.abs(dx), sx = dx > 0 ? 1 : -1;
+            int grad = (dy << 16) / steps, y = y0 << 16;
+            for (int i = 0, x = x0; i < steps; i++, x += sx, y += grad) {
+                int row = y >> 16, frac = (y >> 8) & 0xFF;
+                plot(x, row, coverage(255 - frac));
+                if (frac != 0) plot(x, row + 1, coverage(frac));
+            }
+        } else {
+            int steps = Math.abs(dy), sy = dy > 0 ? 1 : -1;
+            int grad = (dx << 16) / steps, x = x0 << 16;
+            for (int i = 0, y = y0; i < steps; i++, y += sy, x += grad) {
+                int col = x >> 16, frac = (x >> 8) & 0xFF;
+                plot(col, y, coverage(255 - frac));
+                if (frac != 0) plot(col + 1, y, coverage(frac));
+            }
+        }
+    }
+
+    private int coverage(int c) {
+        return Math.min(255, (alpha * c * gain) >> 16);
+    }
+
+    private boolean outside(int x0, int y0, int x1, int y1) {
+        return (x0 < 0 && x1 < 0) || (y0 < 0 && y1 < 0)
+                || (x0 > width && x1 > width) || (y0 > height && y1 > height);
+    }
+
+    // SrcOver of the current colour at alpha a (0..255) onto a premultiplied pixel,
+    // red/blue and alpha/green two channels per multiply
+    private void plot(int x, int y, int a) {
+        if (x < 0 || y < 0 || x >= width || y >= height || a <= 0) return;
+        int i = y * width + x;
+        int d = pixels[i];
+        int sa = a + (a >> 7), da = 256 - sa;
+        pixels[i] = (((d & 0xFF00FF) * da + rb * sa) >>> 8 & 0xFF00FF)
+                | (((d >>> 8) & 0xFF00FF) * da + ag * sa & 0xFF00FF00);
+    }
+}
@@ -0,0 +1,40 @@
+package com.danielbeire;
+
+import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Offline lookups against a GeoIpIndex (dataDir/geoip.bin, or -Dtv.geoip.db=<file>),
+// built with: Launcher --import-geoip <ranges.csv>
+public class LocalGeoEngine implements GeoEngine {
+
+    private final GeoIpIndex index;
+
+    public LocalGeoEngine(GeoIpIndex index) {
+        this.index = index;
+    }
+
+    public static File defaultDatabase() {
+        String db = AppConfig.get("geoip.db", null);
+        return db != null ? new File(db) : new File(AppConfig.dataDir(), "geoip.bin");
+    }
+
+    public static LocalGeoEngine open() throws IOException {
+        File db = defaultDatabase();
+        if (!db.isFile()) throw new IOException("No GeoIP database at " + db + " (run Launcher --import-geoip <csv>)");
+        return new LocalGeoEngine(GeoIpIndex.open(db));
+    }
+
+    @Override
+    public Map<String, Point.Double> locate(List<String> ips) {
+        Map<String, Point.Double> out = new HashMap<>();
+        for (String ip : ips) {
+            int row = index.find(GeoIpIndex.parseIpv4(ip));
+            out.put(ip, row < 0 ? null : new Point.Double(index.lon(row), index.lat(row)));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,41 @@
+package com.danielbeire;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Country outlines at several resolutions, coarsest first. Each level carries the
+// angular error (radians) it was simplified to; the renderer picks the coarsest level
+// whose error stays under a pixel budget at the current on-screen radius.
+public class LodPyramid {
+
+    // allowed error in pixels when the globe is still, and while it moves
+    private static final double STILL_PX = 0.75;
+    private static final double MOVING_PX = 2.0;
+
+    private final List<GeometryStore> levels = new ArrayList<>();
+    private final List<Double> tolerances = new ArrayList<>();
+
+    public static LodPyramid of(GeometryStore single) {
+        LodPyramid p = new LodPyramid();
+        p.add(single, 0);
+        return p;
+    }
+
+    // levels must be added coarsest (largest tolerance) first
+    public void add(GeometryStore level, double tolerance) {
+        levels.add(level);
+        tolerances.add(tolerance);
+    }
+
+    public int levelCount() { return levels.size(); }
+    public GeometryStore level(int i) { return levels.get(i); }
+    public double tolerance(int i) { return tolerances.get(i); }
+
+    public int select(double radiusPx, boolean moving) {
+        double budget = (moving ? MOVING_PX : STILL_PX) / Math.max(1, radiusPx);
+        for (int i = 0; i < levels.size(); i++) {
+            if (tolerances.get(i) <= budget) return i;
+        }
+        return levels.size() - 1;
+    }
+}
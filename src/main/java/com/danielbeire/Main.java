@@ -4,10 +4,19 @@ import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Point;
+import java.io.File;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
@@ -22,8 +31,12 @@ import javax.swing.UIManager;
 
 public class Main extends JFrame {
 
+    private static final String REPLAY_PREFIX = "replay:";
+
     private final JTextField domainField;
     private final JButton traceButton;
+    private final JButton batchButton;
+    private final JButton routeMapButton;
     private final JTextArea outputArea;
     private final MapPanel mapPanel;
     private final JProgressBar progressBar;
@@ -41,10 +54,14 @@ public class Main extends JFrame {
         JPanel inputPanel = new JPanel();
         domainField = new JTextField(25);
         traceButton = new JButton("Trace Route");
+        batchButton = new JButton("Batch...");
+        routeMapButton = new JButton("Route Map");
 
         inputPanel.add(new JLabel("Domain or IP Address:"));
         inputPanel.add(domainField);
         inputPanel.add(traceButton);
+        inputPanel.add(batchButton);
+        inputPanel.add(routeMapButton);
 
         progressBar = new JProgressBar();
         progressBar.setIndeterminate(false);
@@ -79,29 +96,164 @@ public class Main extends JFrame {
             }
         });
 
+        batchButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setDialogTitle("Target list (one domain or IP per line)");
+            if (chooser.showOpenDialog(Main.this) != JFileChooser.APPROVE_OPTION) return;
+            File targets = chooser.getSelectedFile();
+            chooser.setDialogTitle("Save results (JSON lines)");
+            chooser.setSelectedFile(new File(targets.getParentFile(), targets.getName().replaceFirst("\\.[^.]*$", "") + ".jsonl"));
+            if (chooser.showSaveDialog(Main.this) != JFileChooser.APPROVE_OPTION) return;
+            startBatch(targets, chooser.getSelectedFile());
+        });
+
+        routeMapButton.addActionListener(e -> {
+            if (mapPanel.getRouteHeatMap() != null) {
+                mapPanel.setRouteHeatMap(null);
+                routeMapButton.setText("Route Map");
+            } else {
+                showRouteMap();
+            }
+        });
+
         setLocationRelativeTo(null);
     }
 
+    private void setBusy(boolean busy) {
+        traceButton.setEnabled(!busy);
+        batchButton.setEnabled(!busy);
+        routeMapButton.setEnabled(!busy);
+        domainField.setEditable(!busy);
+    }
+
+    private void startBatch(File targetFile, File resultFile) {
+        setBusy(true);
+        outputArea.setText("Batch trace of " + targetFile + " -> " + resultFile + "\n\n");
+        progressBar.setIndeterminate(false);
+        progressBar.setValue(0);
+        progressBar.setString("Running batch...");
+
+        new SwingWorker<Integer, String>() {
+            private int total, done;
+
+            @Override
+            protected Integer doInBackground() throws Exception {
+                List<String> targets = BatchTracer.readTargets(targetFile);
+                total = targets.size();
+                try (Writer out = Files.newBufferedWriter(resultFile.toPath(), StandardCharsets.UTF_8)) {
+                    return new BatchTracer().run(targets, out, (target, hops, located, error) ->
+                            publish(error != null ? target + ": failed: " + error
+                                                  : target + ": " + hops + " hops, " + located + " located"));
+                }
+            }
+
+            @Override
+            protected void process(List<String> chunks) {
+                for (String line : chunks) outputArea.append(line + "\n");
+                done += chunks.size();
+                progressBar.setValue(total == 0 ? 100 : done * 100 / total);
+                progressBar.setString(done + " / " + total);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    int failed = get();
+                    outputArea.append("\nDone, " + failed + " failed. " + geoIP.cache() + "\n");
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    outputArea.append("\nError: " + cause.getMessage());
+                } finally {
+                    setBusy(false);
+                    progressBar.setString("Complete");
+                }
+            }
+        }.execute();
+    }
+
+    // Overlays every stored run as one weighted route map
+    private void showRouteMap() {
+        setBusy(true);
+        progressBar.setIndeterminate(true);
+        progressBar.setString("Loading history...");
+
+        new SwingWorker<RouteHeatMap, Void>() {
+            @Override
+            protected RouteHeatMap doInBackground() throws Exception {
+                RouteHeatMap map = new RouteHeatMap();
+                TraceStore.shared().forEach(Long.MIN_VALUE, Long.MAX_VALUE, map::add);
+                return map;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    RouteHeatMap map = get();
+                    mapPanel.setRouteHeatMap(map);
+                    routeMapButton.setText("Hide Route Map");
+                    outputArea.append("Route map: " + map.runCount() + " runs, " + map.edgeCount()
+                            + " distinct hop-to-hop routes, busiest seen " + map.maxWeight() + " times\n");
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    outputArea.append("\nError: " + cause.getMessage());
+                } finally {
+                    setBusy(false);
+                    progressBar.setIndeterminate(false);
+                    progressBar.setString("");
+                }
+            }
+        }.execute();
+    }
+
     private void startTrace(String domain) {
-        traceButton.setEnabled(false);
-        domainField.setEditable(false);
+        setBusy(true);
         outputArea.setText("Starting traceroute for " + domain + "...\nThis may take a moment.\n\n");
         mapPanel.setTraceCoordinates(null);
         progressBar.setIndeterminate(true);
         progressBar.setString("Running traceroute...");
 
-        SwingWorker<List<Point.Double>, String> worker = new SwingWorker<List<Point.Double>, String>() {
+        // Hops are geolocated while traceroute is still running and added to the map
+        // as they resolve, so the arc grows hop by hop
+        SwingWorker<Integer, String> worker = new SwingWorker<Integer, String>() {
             @Override
-            protected List<Point.Double> doInBackground() throws Exception {
-                Traceroute traceroute = new Traceroute();
-                List<String> ips = traceroute.trace(domain, this::publish);
-
-                publish("\nGeolocating IP addresses...");
-                geoIP geoIP = new geoIP();
-                List<Point.Double> coords = geoIP.getCoordinates(ips);
+            protected Integer doInBackground() throws Exception {
+                Map<String, Point.Double> located = new ConcurrentHashMap<>();
+                HopGeolocator geolocator = new HopGeolocator(new geoIP(), (ip, where) -> {
+                    if (where == null) return;
+                    located.put(ip, where);
+                    long locatedAt = System.nanoTime();
+                    SwingUtilities.invokeLater(() -> {
+                        mapPanel.addTraceHop(where.x, where.y);
+                        Metrics.MAP_UPDATE.record(System.nanoTime() - locatedAt);
+                    });
+                });
+                long started = System.currentTimeMillis();
+                boolean replay = domain.startsWith(REPLAY_PREFIX);
+                Set<String> seen = new HashSet<>();
+                List<Hop> hops;
+                try {
+                    // "replay:<file>" plays back recorded traceroute/tracert output
+                    HopSource source = replay
+                            ? new ReplayHopSource(new File(domain.substring(REPLAY_PREFIX.length()).trim()))
+                            : Traceroute.source();
+                    long t0 = System.nanoTime();
+                    hops = source.trace(domain, this::publish, hop -> {
+                        if (hop.address() != null && seen.add(hop.address())) geolocator.submit(hop.address());
+                    });
+                    Metrics.TRACEROUTE.record(System.nanoTime() - t0);
+                } finally {
+                    geolocator.close();
+                }
 
-                publish("\nDrawing map...");
-                return coords;
+                publish("\nLocated " + located.size() + " of " + seen.size() + " hops.");
+                if (!replay && AppConfig.getBoolean("history", true)) {
+                    try {
+                        TraceStore.shared().append(TraceRecord.of(domain.trim(), started, hops, located));
+                    } catch (Exception e) {
+                        publish("Could not save to history: " + e.getMessage());
+                    }
+                }
+                return located.size();
             }
 
             @Override
@@ -115,15 +267,13 @@ public class Main extends JFrame {
             @Override
             protected void done() {
                 try {
-                    List<Point.Double> coords = get();
-                    mapPanel.setTraceCoordinates(coords);
+                    get();
                 } catch (Exception ex) {
                     Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
                     outputArea.append("\nError: " + cause.getMessage());
                     JOptionPane.showMessageDialog(Main.this, "An error occurred during the trace:\n" + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                 } finally {
-                    traceButton.setEnabled(true);
-                    domainField.setEditable(true);
+                    setBusy(false);
                     progressBar.setIndeterminate(false);
                     progressBar.setString("Complete");
                 }
@@ -133,7 +283,9 @@ public class Main extends JFrame {
         worker.execute();
     }
 
-    public static void main(String[] args) {
+    // The window; Launcher.main handles the command line modes before this class is loaded
+    public static void main(String[] args) throws Exception {
+        Metrics.register();
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
         } catch (Exception e) {
@@ -0,0 +1,72 @@
+package com.danielbeire;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Always-on timers and counters for the trace pipeline and the renderer. Recording is a
+// few atomic increments and never allocates; the JMX bean and the HUD read the same
+// histograms. Times are recorded in nanoseconds.
+public class Metrics implements MetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.danielbeire:type=Metrics";
+
+    // one traceroute process (or replay), start to last hop
+    public static final Histogram TRACEROUTE = new Histogram();
+    // per hop: submitted to a GeoBatcher until its lookup returns (batch window, cache, engine)
+    public static final Histogram GEOLOCATION = new Histogram();
+    // per hop: located until it is added to the map's trace (EDT queueing plus tessellation)
+    public static final Histogram MAP_UPDATE = new Histogram();
+    // one engine lookup of the cache misses (HTTP round trips or a local index search)
+    public static final Histogram GEOIP_REQUEST = new Histogram();
+    // IPs per engine lookup; not a time
+    public static final Histogram GEOIP_BATCH = new Histogram();
+    // MapPanel.paintComponent
+    public static final Histogram FRAME = new Histogram();
+
+    private static volatile int frameVertices, frameSegments;
+    private static boolean registered;
+
+    public static void frame(long nanos, int vertices, int segments) {
+        FRAME.record(nanos);
+        frameVertices = vertices;
+        frameSegments = segments;
+    }
+
+    public static int frameVertices() { return frameVertices; }
+    public static int frameSegments() { return frameSegments; }
+
+    // Publishes the bean on the platform MBean server (jconsole, VisualVM); safe to call twice
+    public static synchronized void register() {
+        if (registered) return;
+        registered = true;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new Metrics(), new ObjectName(OBJECT_NAME));
+        } catch (Exception e) {
+            System.err.println("Metrics not published over JMX: " + e.getMessage());
+        }
+    }
+
+    private static final double MS = 1e-6;
+
+    @Override public Histogram.Snapshot getTraceroute() { return TRACEROUTE.snapshot(MS); }
+    @Override public Histogram.Snapshot getGeolocation() { return GEOLOCATION.snapshot(MS); }
+    @Override public Histogram.Snapshot getMapUpdate() { return MAP_UPDATE.snapshot(MS); }
+
+    @Override public Histogram.Snapshot getGeoIpRequest() { return GEOIP_REQUEST.snapshot(MS); }
+    @Override public Histogram.Snapshot getGeoIpBatchSize() { return GEOIP_BATCH.snapshot(1); }
+    @Override public long getGeoIpCacheHits() { return geoIP.cache().hits(); }
+    @Override public long getGeoIpCacheMisses() { return geoIP.cache().misses(); }
+    @Override public double getGeoIpCacheHitRatio() { return geoIP.cache().hitRatio(); }
+
+    @Override public Histogram.Snapshot getFrameTime() { return FRAME.snapshot(MS); }
+    @Override public int getLastFrameVertices() { return frameVertices; }
+    @Override public int getLastFrameSegments() { return frameSegments; }
+
+    // Clears the histograms; the cache keeps its own lifetime counters
+    @Override
+    public void reset() {
+        for (Histogram h : new Histogram[] {TRACEROUTE, GEOLOCATION, MAP_UPDATE, GEOIP_REQUEST, GEOIP_BATCH, FRAME}) h.reset();
+    }
+}
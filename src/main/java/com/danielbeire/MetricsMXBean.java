@@ -0,0 +1,22 @@
+package com.danielbeire;
+
+// JMX view of Metrics, registered as com.danielbeire:type=Metrics. Times are in
+// milliseconds; batch sizes are IPs per engine lookup.
+public interface MetricsMXBean {
+
+    Histogram.Snapshot getTraceroute();
+    Histogram.Snapshot getGeolocation();
+    Histogram.Snapshot getMapUpdate();
+
+    Histogram.Snapshot getGeoIpRequest();
+    Histogram.Snapshot getGeoIpBatchSize();
+    long getGeoIpCacheHits();
+    long getGeoIpCacheMisses();
+    double getGeoIpCacheHitRatio();
+
+    Histogram.Snapshot getFrameTime();
+    int getLastFrameVertices();
+    int getLastFrameSegments();
+
+    void reset();
+}
@@ -0,0 +1,100 @@
+package com.danielbeire;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+
+// Heads-up display of Metrics drawn over the globe. Lines are formatted into one reused
+// char buffer, so drawing it allocates nothing on our side.
+public class MetricsOverlay {
+
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    // opaque: a translucent fill goes through Java2D's mask blit, which allocates ~5 KB a call
+    private static final Color BOX = new Color(8, 12, 22);
+    private static final Color TEXT = new Color(230, 235, 245);
+    private static final int LINES = 7, LINE_HEIGHT = 15, WIDTH = 430, PAD = 8;
+
+    private final char[] buf = new char[128];
+    private int len;
+
+    public void paint(Graphics2D g2, int x, int y, long framesSkipped) {
+        g2.setColor(BOX);
+        g2.fillRect(x, y, WIDTH, LINES * LINE_HEIGHT + PAD * 2);
+        g2.setColor(TEXT);
+        g2.setFont(FONT);
+        int ty = y + PAD + LINE_HEIGHT - 3, tx = x + PAD;
+
+        Histogram h = Metrics.FRAME;
+        start("frame     ").millis(h.last()).text(" ms  p50 ").millis(h.quantile(0.5))
+                .text("  p95 ").millis(h.quantile(0.95)).text("  p99 ").millis(h.quantile(0.99)).text(" ms");
+        line(g2, tx, ty);
+        start("          vertices ").number(Metrics.frameVertices()).text("  segments ").number(Metrics.frameSegments())
+                .text("  skipped ").number(framesSkipped);
+        line(g2, tx, ty += LINE_HEIGHT);
+        stage("traceroute", Metrics.TRACEROUTE);
+        line(g2, tx, ty += LINE_HEIGHT);
+        stage("geolocate ", Metrics.GEOLOCATION);
+        line(g2, tx, ty += LINE_HEIGHT);
+        stage("map update", Metrics.MAP_UPDATE);
+        line(g2, tx, ty += LINE_HEIGHT);
+        stage("geoip req ", Metrics.GEOIP_REQUEST);
+        line(g2, tx, ty += LINE_HEIGHT);
+        GeoCache cache = geoIP.cache();
+        start("geoip     batch p50 ").number(Metrics.GEOIP_BATCH.quantile(0.5))
+                .text("  max ").number(Metrics.GEOIP_BATCH.max())
+                .text("  cache hits ").number(Math.round(cache.hitRatio() * 100)).text("% of ").number(cache.hits() + cache.misses());
+        line(g2, tx, ty += LINE_HEIGHT);
+    }
+
+    private void stage(String name, Histogram h) {
+        start(name).text("  n ").number(h.count()).text("  last ").millis(h.last())
+                .text("  p50 ").millis(h.quantile(0.5)).text("  p95 ").millis(h.quantile(0.95)).text(" ms");
+    }
+
+    private void line(Graphics2D g2, int x, int y) {
+        g2.drawChars(buf, 0, len, x, y);
+    }
+
+    private MetricsOverlay start(String s) {
+        len = 0;
+        return text(s);
+    }
+
+    private MetricsOverlay text(String s) {
+        int n = Math.min(s.length(), buf.length - len);
+        s.getChars(0, n, buf, len);
+        len += n;
+        return this;
+    }
+
+    private MetricsOverlay number(long v) {
+        if (v < 0) {
+            append('-');
+            v = -v;
+        }
+        int from = len;
+        do {
+            append((char) ('0' + v % 10));
+            v /= 10;
+        } while (v > 0);
+        for (int i = from, j = len - 1; i < j; i++, j--) {
+            char c = buf[i];
+            buf[i] = buf[j];
+            buf[j] = c;
+        }
+        return this;
+    }
+
+    // nanoseconds as milliseconds with one decimal
+    private MetricsOverlay millis(long nanos) {
+        long tenths = (nanos + 50_000) / 100_000;
+        number(tenths / 10);
+        append('.');
+        return append((char) ('0' + tenths % 10));
+    }
+
+    private MetricsOverlay append(char c) {
+        if (len < buf.length) buf[len++] = c;
+        return this;
+    }
+}
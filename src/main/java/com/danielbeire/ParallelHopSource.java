@@ -0,0 +1,78 @@
+package com.danielbeire;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+// Probes every TTL at once instead of one after another, so a path with silent hops
+// takes about one probe timeout instead of one per hop. Hops are reported in TTL order
+// as soon as all lower TTLs are known, and the trace ends at the first TTL the
+// destination itself answers; probes for higher TTLs are cancelled.
+//
+// -Dtv.trace.max.ttl (default 30)
+public class ParallelHopSource implements HopSource {
+
+    // Sends one probe with the given TTL
+    public interface Prober {
+        // Fills hop (already reset to ttl) and returns true if the destination answered.
+        // Should give up after its timeout and react to interruption.
+        boolean probe(String target, int ttl, Hop hop) throws Exception;
+    }
+
+    private static final ExecutorService POOL = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "ttl-probe");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Prober prober;
+    private final int maxTtl;
+
+    public ParallelHopSource(Prober prober) {
+        this(prober, AppConfig.getInt("trace.max.ttl", 30));
+    }
+
+    public ParallelHopSource(Prober prober, int maxTtl) {
+        this.prober = prober;
+        this.maxTtl = Math.max(1, Math.min(255, maxTtl));
+    }
+
+    @Override
+    public List<Hop> trace(String target, Consumer<String> onOutput, Consumer<Hop> onHop) throws Exception {
+        onOutput.accept("traceroute to " + target + ", " + maxTtl + " hops max, all TTLs in parallel");
+
+        List<Future<Boolean>> probes = new ArrayList<>(maxTtl);
+        Hop[] hops = new Hop[maxTtl];
+        for (int ttl = 1; ttl <= maxTtl; ttl++) {
+            Hop hop = new Hop();
+            hop.reset(ttl);
+            hops[ttl - 1] = hop;
+            final int t = ttl;
+            probes.add(POOL.submit(() -> prober.probe(target, t, hop)));
+        }
+
+        List<Hop> out = new ArrayList<>();
+        try {
+            for (int i = 0; i < maxTtl; i++) {
+                boolean reached;
+                try {
+                    reached = probes.get(i).get();
+                } catch (Exception e) {
+                    reached = false; // a failed probe counts as a timeout
+                }
+                Hop hop = hops[i];
+                if (hop.probeCount() == 0) hop.addProbe(Float.NaN, -1);
+                out.add(hop);
+                onOutput.accept(hop.toString());
+                if (onHop != null) onHop.accept(hop);
+                if (reached) break;
+            }
+        } finally {
+            for (Future<Boolean> f : probes) f.cancel(true);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,116 @@
+package com.danielbeire;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+// Projects a GeometryStore on a dedicated render pool. The paths are split into chunks
+// of roughly equal vertex count, each projected into its own ProjectedPaths; the caller
+// (the EDT) projects the last chunk itself, waits for the rest and then rasterizes the
+// merged result. All chunks read the same View snapshot, so a rotation that changes while
+// the pool is busy only shows up in the next frame.
+public class ParallelProjector {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            Math.max(1, AppConfig.getInt("render.threads", Runtime.getRuntime().availableProcessors())),
+            pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("globe-render-" + t.getPoolIndex());
+                t.setDaemon(true);
+                return t;
+            },
+            null, false);
+
+    private final Chunk[] chunks;
+    // chunks are merged into one shape so overlapping borders blend exactly as in one pass
+    private final Path2D.Float shape = new Path2D.Float(Path2D.WIND_NON_ZERO, 4096);
+    private GeometryStore partitioned;
+
+    public ParallelProjector() {
+        this(POOL.getParallelism() * 2);
+    }
+
+    public ParallelProjector(int chunkCount) {
+        chunks = new Chunk[Math.max(1, chunkCount)];
+        for (int i = 0; i < chunks.length; i++) chunks[i] = new Chunk();
+    }
+
+    public static int threads() {
+        return POOL.getParallelism();
+    }
+
+    public void project(GeometryStore store, View view, RenderStats stats) {
+        if (store != partitioned) partition(store);
+        int last = chunks.length - 1;
+        for (int i = 0; i < last; i++) {
+            chunks[i].reinitialize();
+            chunks[i].view = view;
+            POOL.execute(chunks[i]);
+        }
+        chunks[last].view = view;
+        chunks[last].compute();
+        for (int i = 0; i < last; i++) chunks[i].join();
+        for (Chunk c : chunks) {
+            stats.pathsCulled += c.stats.pathsCulled;
+            stats.pathsClipped += c.stats.pathsClipped;
+            stats.pathsUnclipped += c.stats.pathsUnclipped;
+            stats.verticesProjected += c.stats.verticesProjected;
+        }
+    }
+
+    // returns the number of segments drawn
+    public int draw(Graphics2D g2) {
+        shape.reset();
+        int segments = 0;
+        for (Chunk c : chunks) {
+            c.out.appendTo(shape);
+            segments += c.out.segmentCount();
+        }
+        g2.draw(shape);
+        return segments;
+    }
+
+    // same through the software rasterizer; chunk order does not matter for one-pixel lines
+    public int draw(LineRaster raster) {
+        int segments = 0;
+        for (Chunk c : chunks) segments += raster.draw(c.out);
+        return segments;
+    }
+
+    // split path ranges so every chunk has about the same number of vertices
+    private void partition(GeometryStore store) {
+        int paths = store.pathCount();
+        long perChunk = Math.max(1, (long) store.vertexCount() / chunks.length);
+        int from = 0;
+        for (int i = 0; i < chunks.length; i++) {
+            int to = from;
+            if (i == chunks.length - 1) {
+                to = paths;
+            } else {
+                long target = (long) (i + 1) * perChunk;
+                while (to < paths && store.pathEnd(to) <= target) to++;
+            }
+            chunks[i].store = store;
+            chunks[i].from = from;
+            chunks[i].to = to;
+            from = to;
+        }
+        partitioned = store;
+    }
+
+    private static final class Chunk extends RecursiveAction {
+        final ProjectedPaths out = new ProjectedPaths();
+        final RenderStats stats = new RenderStats();
+        GeometryStore store;
+        View view;
+        int from, to;
+
+        @Override protected void compute() {
+            out.clear();
+            stats.reset();
+            if (store != null) out.project(store, from, to, view, stats);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.danielbeire;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+// One ICMP echo with a limited TTL through the system ping, which needs no privileges:
+// the router where the TTL runs out answers "Time to live exceeded" (Windows: "TTL
+// expired in transit"), the destination answers with a normal reply.
+//
+// ping does not print a time for TTL-exceeded answers; for those the probe's RTT is
+// the wall time of the ping process, an upper bound that includes process start-up.
+//
+// At most -Dtv.trace.probe.concurrency ping processes run at once across all traces in
+// the JVM (default 64). ParallelHopSource starts one per TTL, so concurrent traces
+// (BatchTracer) would otherwise start up to max.ttl processes each; probes beyond the
+// limit wait in submission order, lower TTLs first.
+//
+// -Dtv.trace.timeout.millis (default 2000)
+public class PingProber implements ParallelHopSource.Prober {
+
+    private static final Semaphore PROCESSES = new Semaphore(Math.max(1, AppConfig.getInt("trace.probe.concurrency", 64)), true);
+
+    private final int timeoutMillis;
+    private final String os = System.getProperty("os.name").toLowerCase();
+
+    public PingProber() {
+        this(AppConfig.getInt("trace.timeout.millis", 2000));
+    }
+
+    public PingProber(int timeoutMillis) {
+        this.timeoutMillis = Math.max(100, timeoutMillis);
+    }
+
+    @Override
+    public boolean probe(String target, int ttl, Hop hop) throws Exception {
+        List<String> cmd = new ArrayList<>();
+        cmd.add("ping");
+        if (os.contains("win")) {
+            add(cmd, "-n", "1", "-i", Integer.toString(ttl), "-w", Integer.toString(timeoutMillis));
+        } else if (os.contains("mac")) {
+            add(cmd, "-n", "-c", "1", "-m", Integer.toString(ttl), "-t", Integer.toString(seconds()));
+        } else {
+            add(cmd, "-n", "-c", "1", "-t", Integer.toString(ttl), "-W", Integer.toString(seconds()));
+        }
+        cmd.add(target);
+
+        PROCESSES.acquire(); // interrupted when the probe is cancelled while waiting
+        try {
+            return ping(cmd, hop);
+        } finally {
+            PROCESSES.release();
+        }
+    }
+
+    private static boolean ping(List<String> cmd, Hop hop) throws Exception {
+        long t0 = System.nanoTime();
+        Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                float elapsed = (System.nanoTime() - t0) / 1e6f;
+                int at = line.indexOf("from ");
+                if (at < 0) at = line.indexOf("From ");
+                if (at < 0) continue;
+                String addr = address(line, at + 5);
+                if (addr == null) continue;
+
+                // an echo reply carries "time=" / "time<"; anything else from a router
+                // (TTL exceeded, unreachable) names the hop
+                int time = line.indexOf("time=");
+                if (time < 0) time = line.indexOf("time<");
+                boolean reply = time >= 0 && line.indexOf("exceeded") < 0 && line.indexOf("expired") < 0;
+                hop.addProbe(reply ? rtt(line, time + 5, elapsed) : elapsed, hop.addResponder(addr));
+                return reply || line.contains("nreachable");
+            }
+            return false;
+        } finally {
+            p.destroy(); // no-op once ping has exited; stops it when the probe is cancelled
+        }
+    }
+
+    private int seconds() {
+        return Math.max(1, (timeoutMillis + 999) / 1000);
+    }
+
+    private static void add(List<String> cmd, String... args) {
+        for (String a : args) cmd.add(a);
+    }
+
+    // address starting at i, up to ':' / ' ' (IPv6 addresses end at ": " or ' ')
+    private static String address(String line, int i) {
+        int e = i;
+        while (e < line.length() && line.charAt(e) != ' ' && !(line.charAt(e) == ':' && (e + 1 == line.length() || line.charAt(e + 1) == ' '))) e++;
+        String a = line.substring(i, e);
+        if (a.startsWith("(") && a.endsWith(")")) a = a.substring(1, a.length() - 1);
+        return a.isEmpty() ? null : a;
+    }
+
+    private static float rtt(String line, int i, float fallback) {
+        int e = i;
+        while (e < line.length() && (Character.isDigit(line.charAt(e)) || line.charAt(e) == '.')) e++;
+        try {
+            return Float.parseFloat(line.substring(i, e));
+        } catch (NumberFormatException ex) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.danielbeire;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+
+// Screen-space polylines for one stroke style. Geometry is projected straight into
+// reusable int buffers as visible runs, then drawn with a single reused Path2D,
+// so a frame allocates nothing once the buffers have grown to size.
+public class ProjectedPaths {
+
+    private int[] xs = new int[1024];
+    private int[] ys = new int[1024];
+    private int size;
+    // start/end vertex index pairs, one per visible run
+    private int[] runs = new int[256];
+    private int runCount;
+    private int runStart = -1;
+    private final Path2D.Float shape = new Path2D.Float(Path2D.WIND_NON_ZERO, 4096);
+
+    public void clear() {
+        size = 0;
+        runCount = 0;
+        runStart = -1;
+    }
+
+    public int vertexCount() { return size; }
+    public int runCount() { return runCount; }
+    public int runStart(int run) { return runs[run * 2]; }
+    public int runEnd(int run) { return runs[run * 2 + 1]; }
+    public int[] xs() { return xs; }
+    public int[] ys() { return ys; }
+
+    // Projects every path of a store, skipping paths whose bounding cap is behind the globe.
+    public void project(GeometryStore store, View view, RenderStats stats) {
+        project(store, 0, store.pathCount(), view, stats);
+    }
+
+    public void project(GeometryStore store, int fromPath, int toPath, View view, RenderStats stats) {
+        final float[] caps = store.caps();
+        final int[] offsets = store.offsets();
+        for (int i = fromPath; i < toPath; i++) {
+            int k = i * 4;
+            double d = view.depth(caps[k], caps[k + 1], caps[k + 2]);
+            double s = caps[k + 3];
+            if (d < -s) {
+                stats.pathsCulled++;
+                continue;
+            }
+            boolean clip = d < s;
+            if (clip) stats.pathsClipped++;
+            else stats.pathsUnclipped++;
+            stats.verticesProjected += offsets[i + 1] - offsets[i];
+            projectPath(store.coords(), offsets[i], offsets[i + 1], clip, view);
+        }
+    }
+
+    private void projectPath(float[] c, int start, int end, boolean clip, View v) {
+        ensureCapacity(size + end - start);
+        final double cosX = v.cosX, sinX = v.sinX, cosY = v.cosY, sinY = v.sinY;
+        final int cx = v.cx, cy = v.cy, radius = v.radius;
+        for (int i = start; i < end; i++) {
+            int k = i * 3;
+            double x = c[k], y = c[k + 1], z = c[k + 2];
+            double tx = x * cosY - z * sinY;
+            double tz = x * sinY + z * cosY;
+            double ty = y * cosX - tz * sinX;
+            if (clip && y * sinX + tz * cosX < 0) {
+                endRun();
+                continue;
+            }
+            if (runStart < 0) runStart = size;
+            xs[size] = (int) (cx + tx * radius);
+            ys[size] = (int) (cy - ty * radius);
+            size++;
+        }
+        endRun();
+    }
+
+    // Ends the current run; runs of a single point draw nothing and are dropped.
+    public void endRun() {
+        if (runStart < 0) return;
+        if (size - runStart < 2) {
+            size = runStart;
+        } else {
+            if (runCount * 2 + 2 > runs.length) runs = Arrays.copyOf(runs, runs.length * 2);
+            runs[runCount * 2] = runStart;
+            runs[runCount * 2 + 1] = size;
+            runCount++;
+        }
+        runStart = -1;
+    }
+
+    // Line segments in all runs: each run of n points is n - 1 segments
+    public int segmentCount() {
+        endRun();
+        return size - runCount;
+    }
+
+    // Draws every run with the current stroke and colour in one call; returns the
+    // number of segments drawn.
+    public int draw(Graphics2D g2) {
+        shape.reset();
+        appendTo(shape);
+        if (runCount > 0) g2.draw(shape);
+        return size - runCount;
+    }
+
+    public void appendTo(Path2D.Float path) {
+        endRun();
+        for (int r = 0; r < runCount; r++) {
+            int s = runs[r * 2], e = runs[r * 2 + 1];
+            path.moveTo(xs[s], ys[s]);
+            for (int i = s + 1; i < e; i++) path.lineTo(xs[i], ys[i]);
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= xs.length) return;
+        int cap = Math.max(n, xs.length * 2);
+        xs = Arrays.copyOf(xs, cap);
+        ys = Arrays.copyOf(ys, cap);
+    }
+}
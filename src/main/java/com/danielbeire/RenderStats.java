@@ -0,0 +1,33 @@
+package com.danielbeire;
+
+// Per-frame counters filled in by the renderer; reset at the start of every frame.
+public class RenderStats {
+
+    public int pathsCulled;     // bounding cap entirely behind the globe
+    public int pathsClipped;    // straddles the limb, projected with a per-vertex test
+    public int pathsUnclipped;  // cap entirely in front, projected without tests
+    public int verticesProjected;
+    public int segmentsDrawn;   // line segments handed to Java2D, all layers
+    public boolean parallel;    // outlines projected on the render pool
+    public boolean raster;      // thin lines drawn by LineRaster instead of Java2D
+    public long projectNanos;   // outline projection only
+    public long frameNanos;     // whole paintComponent
+
+    public void reset() {
+        pathsCulled = pathsClipped = pathsUnclipped = verticesProjected = segmentsDrawn = 0;
+        projectNanos = frameNanos = 0;
+    }
+
+    public int pathsDrawn() {
+        return pathsClipped + pathsUnclipped;
+    }
+
+    @Override
+    public String toString() {
+        return "paths culled " + pathsCulled + ", drawn " + pathsDrawn()
+                + " (" + pathsUnclipped + " unclipped), vertices " + verticesProjected + ", segments " + segmentsDrawn
+                + String.format(", %s projection %.2f ms, %s lines, frame %.2f ms",
+                        parallel ? "parallel" : "single-threaded", projectNanos / 1e6,
+                        raster ? "raster" : "Java2D", frameNanos / 1e6);
+    }
+}
@@ -0,0 +1,26 @@
+package com.danielbeire;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Plays back recorded traceroute/tracert output; the target is ignored.
+// -Dtv.replay.delay.millis pauses between lines.
+public class ReplayHopSource implements HopSource {
+
+    private final File recording;
+
+    public ReplayHopSource(File recording) {
+        this.recording = recording;
+    }
+
+    @Override
+    public List<Hop> trace(String target, Consumer<String> onOutput, Consumer<Hop> onHop) throws Exception {
+        try (BufferedReader reader = Files.newBufferedReader(recording.toPath(), StandardCharsets.UTF_8)) {
+            return new HopParser().readLines(reader, onOutput, onHop, AppConfig.getInt("replay.delay.millis", 0));
+        }
+    }
+}
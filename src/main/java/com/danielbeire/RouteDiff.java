@@ -0,0 +1,63 @@
+package com.danielbeire;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// What changed between two runs to the same destination: the sequence of responding
+// hop addresses, and/or the geolocated path (located hops further apart than
+// PATH_TOLERANCE_KM, or a different number of distinct locations).
+public final class RouteDiff {
+
+    private static final double PATH_TOLERANCE_KM = 50;
+
+    public final TraceRecord before;
+    public final TraceRecord after;
+    public final boolean hopsChanged;
+    public final boolean pathChanged;
+    public final List<String> addedHops;     // in after, not in before
+    public final List<String> removedHops;   // in before, not in after
+
+    private RouteDiff(TraceRecord before, TraceRecord after) {
+        this.before = before;
+        this.after = after;
+        List<String> a = before.addresses(), b = after.addresses();
+        hopsChanged = !a.equals(b);
+        Set<String> added = new LinkedHashSet<>(b), removed = new LinkedHashSet<>(a);
+        added.removeAll(a);
+        removed.removeAll(b);
+        addedHops = new ArrayList<>(added);
+        removedHops = new ArrayList<>(removed);
+        pathChanged = !samePath(before.path(), after.path());
+    }
+
+    public static RouteDiff compare(TraceRecord before, TraceRecord after) {
+        return new RouteDiff(before, after);
+    }
+
+    public boolean changed() {
+        return hopsChanged || pathChanged;
+    }
+
+    private static boolean samePath(List<Point.Double> a, List<Point.Double> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (TraceRecord.distanceKm(a.get(i).y, a.get(i).x, b.get(i).y, b.get(i).x) > PATH_TOLERANCE_KM) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(before.target()).append(": ");
+        if (!changed()) return sb.append("no change").toString();
+        sb.append(hopsChanged ? "hops changed" : "same hops");
+        sb.append(pathChanged ? ", path moved" : ", same path");
+        if (!addedHops.isEmpty()) sb.append(", +").append(addedHops);
+        if (!removedHops.isEmpty()) sb.append(", -").append(removedHops);
+        return sb.toString();
+    }
+}
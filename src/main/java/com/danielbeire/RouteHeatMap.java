@@ -0,0 +1,142 @@
+package com.danielbeire;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.List;
+
+// Many trace runs merged into one weighted route map. Hop locations are snapped to a
+// grid of -Dtv.heatmap.cell.deg degrees and every hop-to-hop edge between two cells is
+// kept once, with the number of times it was seen. Each distinct edge is tessellated
+// into a great-circle arc when it first appears; adding the same route again only
+// bumps its weight. Per frame the arcs are drawn in a few weight classes (see
+// MapPanel), so frame time depends on the number of distinct arcs, not of runs.
+//
+// Not thread-safe: build it off the EDT, then hand it to MapPanel.setRouteHeatMap.
+public class RouteHeatMap {
+
+    public static final int CLASSES = 6;
+
+    private final double cellDeg;
+    private final int columns;
+    private final GeometryStore arcs = new GeometryStore(4096, 256);  // path i is edge i
+    private long[] keys = new long[256];
+    private int[] weights = new int[256];
+    private byte[] classes = new byte[256];
+    private int edgeCount;
+    private int maxWeight;
+    private long runs;
+    private boolean classesStale;
+    // open addressing: edge key -> edge index + 1, 0 = empty
+    private long[] tableKeys = new long[1024];
+    private int[] tableEdges = new int[1024];
+
+    public RouteHeatMap() {
+        this(Double.parseDouble(AppConfig.get("heatmap.cell.deg", "0.5")));
+    }
+
+    public RouteHeatMap(double cellDeg) {
+        this.cellDeg = Math.max(0.01, cellDeg);  // keeps cell numbers within an int
+        this.columns = (int) Math.ceil(360 / this.cellDeg) + 1;
+    }
+
+    // Adds one run's located hops (lon, lat), in hop order
+    public void add(List<Point.Double> path) {
+        runs++;
+        int prev = -1;
+        for (Point.Double p : path) {
+            int cell = cell(p.x, p.y);
+            if (prev >= 0 && cell != prev) addEdge(prev, cell);
+            prev = cell;
+        }
+    }
+
+    public void add(TraceRecord r) {
+        add(r.path());
+    }
+
+    public long runCount() { return runs; }
+    public int edgeCount() { return edgeCount; }
+    public int maxWeight() { return maxWeight; }
+    public int weight(int edge) { return weights[edge]; }
+
+    // Arc of edge i is path i
+    public GeometryStore arcs() { return arcs; }
+
+    // Weight class 0..CLASSES-1 per edge, on a log scale up to the heaviest edge
+    public byte[] classes() {
+        if (classesStale) {
+            double scale = maxWeight > 1 ? CLASSES / Math.log(maxWeight + 1) : 0;
+            for (int i = 0; i < edgeCount; i++) {
+                classes[i] = (byte) Math.min(CLASSES - 1, (int) (Math.log(weights[i]) * scale));
+            }
+            classesStale = false;
+        }
+        return classes;
+    }
+
+    private int cell(double lonDeg, double latDeg) {
+        int row = (int) Math.floor((Math.max(-90, Math.min(90, latDeg)) + 90) / cellDeg);
+        int col = (int) Math.floor((((lonDeg + 180) % 360 + 360) % 360) / cellDeg);
+        return row * columns + col;
+    }
+
+    // Edges are undirected: A->B and B->A are the same arc
+    private void addEdge(int a, int b) {
+        long key = a < b ? (long) a << 32 | b : (long) b << 32 | a;
+        int mask = tableKeys.length - 1;
+        int slot = (int) (mix(key) & mask);
+        while (tableEdges[slot] != 0) {
+            if (tableKeys[slot] == key) {
+                bump(tableEdges[slot] - 1);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int edge = edgeCount++;
+        if (edge == keys.length) {
+            keys = Arrays.copyOf(keys, edge * 2);
+            weights = Arrays.copyOf(weights, edge * 2);
+            classes = Arrays.copyOf(classes, edge * 2);
+        }
+        keys[edge] = key;
+        tableKeys[slot] = key;
+        tableEdges[slot] = edge + 1;
+        tessellate(a, b);
+        bump(edge);
+        if (edgeCount * 2 > tableKeys.length) rehash();
+    }
+
+    private void bump(int edge) {
+        if (++weights[edge] > maxWeight) maxWeight = weights[edge];
+        classesStale = true;
+    }
+
+    // arc between the cell centres, so every edge merged into this one draws the same
+    private void tessellate(int a, int b) {
+        double[] pa = centre(a), pb = centre(b);
+        TraceGeometry.addArc(arcs, pa[0], pa[1], pa[2], pb[0], pb[1], pb[2]);
+    }
+
+    private double[] centre(int cell) {
+        double lat = Math.toRadians(Math.min(90, (cell / columns + 0.5) * cellDeg - 90));
+        double lon = Math.toRadians((cell % columns + 0.5) * cellDeg - 180);
+        return new double[] { Math.cos(lat) * Math.cos(lon), Math.sin(lat), Math.cos(lat) * Math.sin(lon) };
+    }
+
+    private void rehash() {
+        tableKeys = new long[tableKeys.length * 2];
+        tableEdges = new int[tableEdges.length * 2];
+        int mask = tableKeys.length - 1;
+        for (int e = 0; e < edgeCount; e++) {
+            int slot = (int) (mix(keys[e]) & mask);
+            while (tableEdges[slot] != 0) slot = (slot + 1) & mask;
+            tableKeys[slot] = keys[e];
+            tableEdges[slot] = e + 1;
+        }
+    }
+
+    private static long mix(long k) {
+        k *= 0x9E3779B97F4A7C15L;
+        return k ^ (k >>> 29);
+    }
+}
@@ -0,0 +1,41 @@
+package com.danielbeire;
+
+import java.util.List;
+
+// Offline stand-in for PingProber: answers from a recorded path (e.g. a parsed
+// traceroute recording) after the recorded RTT, so ParallelHopSource can be run
+// without network access. TTLs past the end of the path are answered by the last hop,
+// the destination; silent hops wait for the timeout.
+public class ScriptedProber implements ParallelHopSource.Prober {
+
+    private final List<Hop> path;
+    private final int timeoutMillis;
+
+    public ScriptedProber(List<Hop> path, int timeoutMillis) {
+        this.path = path;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public boolean probe(String target, int ttl, Hop hop) throws Exception {
+        if (path.isEmpty()) {
+            Thread.sleep(timeoutMillis);
+            return false;
+        }
+        boolean destination = ttl >= path.size();
+        Hop recorded = path.get(Math.min(ttl, path.size()) - 1);
+        int answered = -1;
+        for (int i = 0; i < recorded.probeCount() && answered < 0; i++) {
+            if (recorded.probeResponder(i) >= 0) answered = i;
+        }
+        if (answered < 0) {
+            Thread.sleep(timeoutMillis);
+            hop.addProbe(Float.NaN, -1);
+            return false;
+        }
+        float rtt = recorded.rtt(answered);
+        Thread.sleep((long) Math.min(rtt, timeoutMillis));
+        hop.addProbe(rtt, hop.addResponder(recorded.responder(recorded.probeResponder(answered))));
+        return destination;
+    }
+}
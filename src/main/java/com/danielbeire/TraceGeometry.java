@@ -0,0 +1,65 @@
+package com.danielbeire;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.List;
+
+// A traceroute path tessellated once, when the hops are known: one great-circle arc
+// per hop pair as unit vectors, plus the hop positions for the markers. Per frame the
+// arcs are only rotated and projected like any other GeometryStore.
+public class TraceGeometry {
+
+    // arc samples per radian of great-circle distance (at least MIN_SEGMENTS per arc)
+    private static final double SEGMENTS_PER_RADIAN = 28;
+    private static final int MIN_SEGMENTS = 8;
+
+    private final GeometryStore arcs = new GeometryStore(256, 32);
+    private float[] hops = new float[32 * 3];
+    private int hopCount;
+
+    public static TraceGeometry of(List<Point.Double> coords) {
+        TraceGeometry t = new TraceGeometry();
+        if (coords != null) {
+            for (Point.Double p : coords) t.addHop(p.x, p.y);
+        }
+        return t;
+    }
+
+    // Appends a hop (lon, lat in degrees) and the arc from the previous hop.
+    public void addHop(double lonDeg, double latDeg) {
+        double lat = Math.toRadians(latDeg), lon = Math.toRadians(lonDeg);
+        double x = Math.cos(lat) * Math.cos(lon), y = Math.sin(lat), z = Math.cos(lat) * Math.sin(lon);
+        if (hopCount > 0) {
+            int k = (hopCount - 1) * 3;
+            addArc(arcs, hops[k], hops[k + 1], hops[k + 2], x, y, z);
+        }
+        if (hopCount * 3 + 3 > hops.length) hops = Arrays.copyOf(hops, hops.length * 2);
+        int k = hopCount * 3;
+        hops[k] = (float) x;
+        hops[k + 1] = (float) y;
+        hops[k + 2] = (float) z;
+        hopCount++;
+    }
+
+    // Slerp from a to b, appended to store as one path
+    static void addArc(GeometryStore arcs, double ax, double ay, double az, double bx, double by, double bz) {
+        double dot = Math.max(-1, Math.min(1, ax * bx + ay * by + az * bz));
+        double theta = Math.acos(dot);
+        int segments = Math.max(MIN_SEGMENTS, (int) Math.ceil(theta * SEGMENTS_PER_RADIAN));
+        double sinT = Math.sin(theta);
+        arcs.beginPath();
+        for (int i = 0; i <= segments; i++) {
+            double t = (double) i / segments;
+            double s1 = (sinT == 0) ? 1 - t : Math.sin((1 - t) * theta) / sinT;
+            double s2 = (sinT == 0) ? t     : Math.sin(t * theta) / sinT;
+            arcs.addVertex(s1 * ax + s2 * bx, s1 * ay + s2 * by, s1 * az + s2 * bz);
+        }
+        arcs.endPath();
+    }
+
+    public GeometryStore arcs() { return arcs; }
+    public int hopCount() { return hopCount; }
+
+    // Hop positions, three floats per hop
+    public float[] hops() { return hops; }
+}
@@ -0,0 +1,185 @@
+package com.danielbeire;
+
+import java.awt.Point;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// One stored trace run: target, time and per hop the first responder, mean RTT, loss
+// and location (NaN when unknown). This is what TraceStore keeps on disk.
+public final class TraceRecord {
+
+    private final String target;
+    private final long timeMillis;
+    private final int[] ttl;
+    private final String[] address;   // null for a hop that did not answer
+    private final float[] rtt;        // mean RTT in ms, NaN if no probe answered
+    private final float[] loss;       // 0..1
+    private final float[] lat, lon;   // NaN if not located
+
+    private TraceRecord(String target, long timeMillis, int hops) {
+        this.target = target;
+        this.timeMillis = timeMillis;
+        ttl = new int[hops];
+        address = new String[hops];
+        rtt = new float[hops];
+        loss = new float[hops];
+        lat = new float[hops];
+        lon = new float[hops];
+    }
+
+    // where maps addresses to (lon, lat); hops without an entry are stored unlocated
+    public static TraceRecord of(String target, long timeMillis, List<Hop> hops, Map<String, Point.Double> where) {
+        TraceRecord r = new TraceRecord(target, timeMillis, hops.size());
+        for (int i = 0; i < hops.size(); i++) {
+            Hop h = hops.get(i);
+            r.ttl[i] = h.ttl();
+            r.address[i] = h.address();
+            r.rtt[i] = (float) h.avgRtt();
+            r.loss[i] = (float) h.loss();
+            Point.Double p = h.address() != null ? where.get(h.address()) : null;
+            r.lat[i] = p != null ? (float) p.y : Float.NaN;
+            r.lon[i] = p != null ? (float) p.x : Float.NaN;
+        }
+        return r;
+    }
+
+    public String target() { return target; }
+    public long timeMillis() { return timeMillis; }
+    public int hopCount() { return ttl.length; }
+    public int ttl(int i) { return ttl[i]; }
+    public String address(int i) { return address[i]; }
+    public float rtt(int i) { return rtt[i]; }
+    public float loss(int i) { return loss[i]; }
+    public float lat(int i) { return lat[i]; }
+    public float lon(int i) { return lon[i]; }
+    public boolean isLocated(int i) { return !Float.isNaN(lat[i]); }
+
+    // Responding addresses in hop order (silent hops left out)
+    public List<String> addresses() {
+        List<String> out = new ArrayList<>();
+        for (String a : address) if (a != null) out.add(a);
+        return out;
+    }
+
+    // Located hops as (lon, lat), in hop order, consecutive repeats merged
+    public List<Point.Double> path() {
+        List<Point.Double> out = new ArrayList<>();
+        for (int i = 0; i < ttl.length; i++) {
+            if (!isLocated(i)) continue;
+            Point.Double last = out.isEmpty() ? null : out.get(out.size() - 1);
+            if (last == null || last.x != lon[i] || last.y != lat[i]) out.add(new Point.Double(lon[i], lat[i]));
+        }
+        return out;
+    }
+
+    // True if any located hop lies within km of (lat, lon), e.g. "goes via Frankfurt"
+    public boolean passesNear(double latDeg, double lonDeg, double km) {
+        for (int i = 0; i < ttl.length; i++) {
+            if (isLocated(i) && distanceKm(latDeg, lonDeg, lat[i], lon[i]) <= km) return true;
+        }
+        return false;
+    }
+
+    static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double p1 = Math.toRadians(lat1), p2 = Math.toRadians(lat2);
+        double dp = p2 - p1, dl = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dp / 2) * Math.sin(dp / 2) + Math.cos(p1) * Math.cos(p2) * Math.sin(dl / 2) * Math.sin(dl / 2);
+        return 6371.0 * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    // --- binary form, see TraceStore ---
+    // long time, short targetLen, target (UTF-8), short hops,
+    // per hop: byte ttl, byte addrLen, addr (ASCII), float rtt, byte loss%, float lat, float lon
+    static final int MAX_ADDRESS = 255;
+    static final int MAX_TARGET = 0xFFFF, MAX_HOPS = 0xFFFF;
+    // bytes per hop without the address
+    private static final int HOP_BYTES = 1 + 1 + 4 + 1 + 8;
+    // encodedSize() bounds: an empty target with no hops, and the largest encodable record
+    static final int MIN_SIZE = 8 + 2 + 2;
+    static final int MAX_SIZE = MIN_SIZE + MAX_TARGET + MAX_HOPS * (HOP_BYTES + MAX_ADDRESS);
+
+    int encodedSize() {
+        int n = MIN_SIZE + target.getBytes(StandardCharsets.UTF_8).length;
+        for (String a : address) n += HOP_BYTES + (a == null ? 0 : a.length());
+        return n;
+    }
+
+    // Throws IllegalArgumentException, before writing anything, if an address does not
+    // fit the one-byte ASCII form or the target or hop count does not fit its length field
+    void encode(ByteBuffer b) {
+        byte[] t = target.getBytes(StandardCharsets.UTF_8);
+        if (t.length > MAX_TARGET) throw new IllegalArgumentException("Target longer than " + MAX_TARGET + " bytes");
+        if (ttl.length > MAX_HOPS) throw new IllegalArgumentException("More than " + MAX_HOPS + " hops");
+        for (String a : address) {
+            if (a == null) continue;
+            if (a.length() > MAX_ADDRESS) throw new IllegalArgumentException("Hop address longer than " + MAX_ADDRESS + " chars");
+            for (int k = 0; k < a.length(); k++) {
+                if (a.charAt(k) > 0x7F) throw new IllegalArgumentException("Hop address is not ASCII: " + a);
+            }
+        }
+        b.putLong(timeMillis);
+        b.putShort((short) t.length).put(t);
+        b.putShort((short) ttl.length);
+        for (int i = 0; i < ttl.length; i++) {
+            b.put((byte) ttl[i]);
+            if (address[i] == null) {
+                b.put((byte) 0);
+            } else {
+                b.put((byte) address[i].length());
+                for (int k = 0; k < address[i].length(); k++) b.put((byte) address[i].charAt(k));
+            }
+            b.putFloat(rtt[i]).put((byte) Math.round(loss[i] * 100)).putFloat(lat[i]).putFloat(lon[i]);
+        }
+    }
+
+    static TraceRecord decode(ByteBuffer b) {
+        long time = b.getLong();
+        byte[] t = new byte[b.getShort() & 0xFFFF];
+        b.get(t);
+        TraceRecord r = new TraceRecord(new String(t, StandardCharsets.UTF_8), time, b.getShort() & 0xFFFF);
+        char[] addr = new char[MAX_ADDRESS];
+        for (int i = 0; i < r.ttl.length; i++) {
+            r.ttl[i] = b.get() & 0xFF;
+            int len = b.get() & 0xFF;
+            for (int k = 0; k < len; k++) addr[k] = (char) (b.get() & 0xFF);
+            r.address[i] = len == 0 ? null : new String(addr, 0, len);
+            r.rtt[i] = b.getFloat();
+            r.loss[i] = (b.get() & 0xFF) / 100f;
+            r.lat[i] = b.getFloat();
+            r.lon[i] = b.getFloat();
+        }
+        return r;
+    }
+
+    // Target and time only, for building the index without decoding hops
+    static String decodeTarget(ByteBuffer b, int recordStart) {
+        int len = b.getShort(recordStart + 8) & 0xFFFF;
+        byte[] t = new byte[len];
+        for (int k = 0; k < len; k++) t[k] = b.get(recordStart + 10 + k);
+        return new String(t, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof TraceRecord)) return false;
+        TraceRecord r = (TraceRecord) o;
+        return target.equals(r.target) && timeMillis == r.timeMillis && Arrays.equals(ttl, r.ttl)
+                && Arrays.equals(address, r.address) && Arrays.equals(rtt, r.rtt)
+                && Arrays.equals(lat, r.lat) && Arrays.equals(lon, r.lon);
+    }
+
+    @Override
+    public int hashCode() {
+        return target.hashCode() * 31 + Long.hashCode(timeMillis);
+    }
+
+    @Override
+    public String toString() {
+        return target + " @ " + Instant.ofEpochMilli(timeMillis) + " " + addresses();
+    }
+}
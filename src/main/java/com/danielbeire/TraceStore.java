@@ -0,0 +1,350 @@
+package com.danielbeire;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// Append-only history of trace runs. Runs are appended to segment files
+// (seg-000001.dat, ...) which roll over at -Dtv.history.segment.mb, at most about 2000 MB:
+// record positions are int offsets into one MappedByteBuffer per segment. Each segment is a
+// header (magic, version) followed by records: int length, then TraceRecord's binary
+// form. A record cut short by a crash is dropped when the store is opened.
+//
+// Only one process may write a store: an open store holds an exclusive lock on
+// <dir>/.lock until it is closed. If another process (say the window, while a scheduled
+// --batch runs) already holds it, the store opens read-only on what was on disk at that
+// point, and append() throws an IOException saying so.
+//
+// The index is rebuilt when the store opens, by walking the record headers of the
+// memory-mapped segments: per destination and overall, the run times and record
+// positions as primitive arrays in time order. Queries binary-search the times and
+// decode only the records they return, straight from the mapped segments.
+public class TraceStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x53485654; // "TVHS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    // a record that starts below this still ends within an int offset
+    static final long MAX_SEGMENT = Integer.MAX_VALUE - 4 - TraceRecord.MAX_SIZE;
+
+    private static TraceStore shared;
+
+    private final File dir;
+    private final long segmentLimit;
+    private final List<MappedByteBuffer> mapped = new ArrayList<>();
+    private final List<File> segments = new ArrayList<>();
+    private final Map<String, Postings> byTarget = new HashMap<>();
+    private final Postings all = new Postings();
+    private FileChannel active;
+    private long activeSize;
+    private FileChannel lockFile;
+    private FileLock lock;       // null: another process writes this store, we only read
+
+    // Record positions (segment << 32 | offset) and times, kept sorted by time
+    private static final class Postings {
+        long[] times = new long[16];
+        long[] locs = new long[16];
+        int n;
+        boolean sorted = true;
+
+        void add(long time, long loc) {
+            if (n == times.length) {
+                times = Arrays.copyOf(times, n * 2);
+                locs = Arrays.copyOf(locs, n * 2);
+            }
+            if (n > 0 && time < times[n - 1]) sorted = false;
+            times[n] = time;
+            locs[n++] = loc;
+        }
+
+        void sort() {
+            if (sorted) return;
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Long.compare(times[a], times[b]));
+            long[] t = new long[times.length], l = new long[locs.length];
+            for (int i = 0; i < n; i++) {
+                t[i] = times[order[i]];
+                l[i] = locs[order[i]];
+            }
+            times = t;
+            locs = l;
+            sorted = true;
+        }
+
+        // first index with times[i] >= time
+        int lowerBound(long time) {
+            int lo = 0, hi = n;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] < time) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    private TraceStore(File dir, long segmentLimit) {
+        this.dir = dir;
+        this.segmentLimit = segmentLimit;
+    }
+
+    public static TraceStore open(File dir) throws IOException {
+        return open(dir, AppConfig.getInt("history.segment.mb", 64) * 1024L * 1024L);
+    }
+
+    public static TraceStore open(File dir, long segmentLimit) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        TraceStore s = new TraceStore(dir, Math.min(MAX_SEGMENT, Math.max(4096, segmentLimit)));
+        s.lock();
+        try {
+            s.load();
+        } catch (IOException | RuntimeException e) {
+            s.close();
+            throw e;
+        }
+        return s;
+    }
+
+    // The store in -Dtv.history.dir (default <data dir>/history), opened on first use
+    public static synchronized TraceStore shared() throws IOException {
+        if (shared == null) {
+            String d = AppConfig.get("history.dir", null);
+            shared = open(d != null ? new File(d) : new File(AppConfig.dataDir(), "history"));
+            TraceStore s = shared;
+            if (!s.writable()) System.err.println("History " + s.dir + " is in use by another process; new runs will not be saved");
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    s.close();
+                } catch (IOException ignored) {
+                }
+            }, "history-close"));
+        }
+        return shared;
+    }
+
+    public synchronized void append(TraceRecord r) throws IOException {
+        if (lock == null) throw new IOException("History " + dir + " is in use by another process; opened read-only");
+        int size = r.encodedSize();
+        ByteBuffer b = ByteBuffer.allocate(4 + size).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(size);
+        r.encode(b);
+        b.flip();
+        if (active == null || activeSize + 4 + size > segmentLimit && activeSize > HEADER_BYTES) roll();
+        long offset = activeSize;
+        while (b.hasRemaining()) activeSize += active.write(b, activeSize);
+        index(r.target(), r.timeMillis(), ((long) (segments.size() - 1) << 32) | offset);
+    }
+
+    public synchronized List<String> destinations() {
+        return new ArrayList<>(new TreeSet<>(byTarget.keySet()));
+    }
+
+    // False when another process held the store's lock at open
+    public synchronized boolean writable() {
+        return lock != null;
+    }
+
+    public synchronized int size() {
+        return all.n;
+    }
+
+    // All runs to target, oldest first
+    public List<TraceRecord> history(String target) throws IOException {
+        return history(target, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    // Runs to target with fromMillis <= time < toMillis, oldest first
+    public synchronized List<TraceRecord> history(String target, long fromMillis, long toMillis) throws IOException {
+        Postings p = byTarget.get(target);
+        return p == null ? new ArrayList<>() : read(p, fromMillis, toMillis);
+    }
+
+    // Runs to any destination with fromMillis <= time < toMillis, oldest first
+    public synchronized List<TraceRecord> between(long fromMillis, long toMillis) throws IOException {
+        return read(all, fromMillis, toMillis);
+    }
+
+    // Like between(), but hands each run to action as it is decoded instead of
+    // collecting them, e.g. to aggregate the whole history
+    public synchronized void forEach(long fromMillis, long toMillis, Consumer<TraceRecord> action) throws IOException {
+        all.sort();
+        for (int i = all.lowerBound(fromMillis); i < all.n && all.times[i] < toMillis; i++) action.accept(read(all.locs[i]));
+    }
+
+    public synchronized TraceRecord latest(String target) throws IOException {
+        Postings p = byTarget.get(target);
+        if (p == null || p.n == 0) return null;
+        p.sort();
+        return read(p.locs[p.n - 1]);
+    }
+
+    // Every run to target whose hops or located path differ from the run before it
+    public List<RouteDiff> changes(String target) throws IOException {
+        List<RouteDiff> out = new ArrayList<>();
+        TraceRecord prev = null;
+        for (TraceRecord r : history(target)) {
+            if (prev != null) {
+                RouteDiff d = RouteDiff.compare(prev, r);
+                if (d.changed()) out.add(d);
+            }
+            prev = r;
+        }
+        return out;
+    }
+
+    // First run to target matching test after one that did not, e.g.
+    // r -> r.passesNear(50.11, 8.68, 50) for "since when via Frankfurt"; null if none
+    public TraceRecord firstSince(String target, Predicate<TraceRecord> test) throws IOException {
+        List<TraceRecord> runs = history(target);
+        TraceRecord since = null;
+        for (TraceRecord r : runs) {
+            if (!test.test(r)) since = null;
+            else if (since == null) since = r;
+        }
+        return since;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (active != null) {
+            active.force(false);
+            active.close();
+            active = null;
+        }
+        if (lockFile != null) {
+            lockFile.close(); // releases the lock
+            lockFile = null;
+            lock = null;
+        }
+    }
+
+    private List<TraceRecord> read(Postings p, long fromMillis, long toMillis) throws IOException {
+        p.sort();
+        List<TraceRecord> out = new ArrayList<>();
+        for (int i = p.lowerBound(fromMillis); i < p.n && p.times[i] < toMillis; i++) out.add(read(p.locs[i]));
+        return out;
+    }
+
+    private TraceRecord read(long loc) throws IOException {
+        int seg = (int) (loc >>> 32), offset = (int) loc;
+        ByteBuffer b = segment(seg, offset);
+        int len = b.getInt(offset);
+        ByteBuffer rec = b.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        rec.position(offset + 4).limit(offset + 4 + len);
+        return TraceRecord.decode(rec);
+    }
+
+    // mapping of segment seg covering at least the record at offset; the active
+    // segment is remapped as it grows
+    private ByteBuffer segment(int seg, int offset) throws IOException {
+        MappedByteBuffer m = mapped.get(seg);
+        if (m == null || m.capacity() < offset + 4 || m.capacity() < offset + 4 + m.getInt(offset)) {
+            try (FileChannel ch = FileChannel.open(segments.get(seg).toPath(), StandardOpenOption.READ)) {
+                m = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            }
+            m.order(ByteOrder.LITTLE_ENDIAN);
+            mapped.set(seg, m);
+        }
+        return m;
+    }
+
+    private void index(String target, long time, long loc) {
+        Postings p = byTarget.get(target);
+        if (p == null) byTarget.put(target, p = new Postings());
+        p.add(time, loc);
+        all.add(time, loc);
+    }
+
+    private void load() throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("seg-") && name.endsWith(".dat"));
+        if (files != null) {
+            Arrays.sort(files);
+            for (File f : files) {
+                segments.add(f);
+                mapped.add(null);
+            }
+        }
+        Map<String, String> targets = new HashMap<>();
+        for (int seg = 0; seg < segments.size(); seg++) {
+            boolean last = seg == segments.size() - 1;
+            long good;
+            try (FileChannel ch = FileChannel.open(segments.get(seg).toPath(), StandardOpenOption.READ)) {
+                // the active segment is read rather than mapped: it may need truncating, which
+                // fails on Windows while a mapping is alive; segment() maps it once validated
+                ByteBuffer m = last ? readFully(ch) : ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                m.order(ByteOrder.LITTLE_ENDIAN);
+                if (!last) mapped.set(seg, (MappedByteBuffer) m);
+                if (m.capacity() < HEADER_BYTES || m.getInt(0) != MAGIC || m.getInt(4) != VERSION) {
+                    throw new IOException("Not a history segment: " + segments.get(seg));
+                }
+                int pos = HEADER_BYTES;
+                while (pos + 4 <= m.capacity()) {
+                    int len = m.getInt(pos);
+                    if (len < TraceRecord.MIN_SIZE || pos + 4 + len > m.capacity()) break;
+                    String target = TraceRecord.decodeTarget(m, pos + 4);
+                    String interned = targets.putIfAbsent(target, target);
+                    index(interned != null ? interned : target, m.getLong(pos + 4), ((long) seg << 32) | pos);
+                    pos += 4 + len;
+                }
+                good = pos;
+            }
+            // drop a torn record at the end of the last segment; read-only, it may be a
+            // record the writing process is still appending, so leave it alone
+            if (last && lock != null) {
+                active = FileChannel.open(segments.get(seg).toPath(), StandardOpenOption.WRITE);
+                if (active.size() > good) active.truncate(good);
+                activeSize = good;
+            }
+        }
+    }
+
+    // Takes <dir>/.lock for the life of the store, or leaves lock null if another process has it
+    private void lock() throws IOException {
+        lockFile = FileChannel.open(new File(dir, ".lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            lock = lockFile.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null; // another store in this JVM has it
+        }
+        if (lock == null) {
+            lockFile.close();
+            lockFile = null;
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel ch) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate((int) ch.size());
+        while (b.hasRemaining() && ch.read(b, b.position()) >= 0) { }
+        b.clear();
+        return b;
+    }
+
+    private void roll() throws IOException {
+        if (active != null) {
+            active.force(false);
+            active.close();
+        }
+        File f = new File(dir, String.format("seg-%06d.dat", segments.size() + 1));
+        active = FileChannel.open(f.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer h = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(MAGIC).putInt(VERSION);
+        h.flip();
+        active.write(h, 0);
+        activeSize = HEADER_BYTES;
+        segments.add(f);
+        mapped.add(null);
+    }
+}
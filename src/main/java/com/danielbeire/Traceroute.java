@@ -1,43 +1,62 @@
 package com.danielbeire;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.function.Consumer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class Traceroute {
 
-    private static final Pattern IP_PATTERN = Pattern.compile("(\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3})");
-
     public List<String> trace(String domain, Consumer<String> onOutput) throws Exception {
+        return trace(domain, onOutput, ip -> { });
+    }
+
+    // onHop is called with each new hop IP as soon as its line has been read
+    public List<String> trace(String domain, Consumer<String> onOutput, Consumer<String> onHop) throws Exception {
         List<String> ips = new ArrayList<>();
-        String os = System.getProperty("os.name").toLowerCase();
-        String command = os.contains("win") ? "tracert " + domain : "traceroute " + domain;
-
-        Process process = Runtime.getRuntime().exec(command);
-
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                onOutput.accept(line);
-                Matcher matcher = IP_PATTERN.matcher(line);
-                if (matcher.find()) {
-                    String ip = matcher.group(1);
-                    if (!ips.contains(ip)) {
-                        ips.add(ip);
-                    }
-                }
-            }
-        }
+        traceHops(domain, onOutput, newAddresses(ips, onHop));
+        return ips;
+    }
 
-        int exitCode = process.waitFor();
-        if (exitCode != 0) {
-            throw new RuntimeException("Traceroute command failed. Make sure it's installed and you have network connectivity.");
-        }
+    // Traces target with the configured HopSource, reporting every hop as it is known
+    public List<Hop> traceHops(String domain, Consumer<String> onOutput, Consumer<Hop> onHop) throws Exception {
+        return source().trace(domain, onOutput, onHop);
+    }
 
+    // Feeds recorded traceroute/tracert output through the same pipeline as a live trace
+    public List<String> replay(File recording, Consumer<String> onOutput, Consumer<String> onHop) throws Exception {
+        List<String> ips = new ArrayList<>();
+        new ReplayHopSource(recording).trace(null, onOutput, newAddresses(ips, onHop));
         return ips;
     }
+
+    // -Dtv.trace.source:
+    //   exec             system traceroute/tracert (default)
+    //   parallel         all TTLs at once through ping
+    //   replay:<file>    recorded output
+    //   simulate:<file>  the parallel engine answering from a recording, no network
+    public static HopSource source() throws Exception {
+        String src = AppConfig.get("trace.source", "exec");
+        if (src.equals("parallel")) return new ParallelHopSource(new PingProber());
+        if (src.startsWith("replay:")) return new ReplayHopSource(new File(src.substring(7)));
+        if (src.startsWith("simulate:")) {
+            List<Hop> path = new ReplayHopSource(new File(src.substring(9))).trace(null, line -> { }, null);
+            return new ParallelHopSource(new ScriptedProber(path, AppConfig.getInt("trace.timeout.millis", 2000)));
+        }
+        return new ExecHopSource();
+    }
+
+    // Collects the first responder of each hop, without repeats, and passes new ones on
+    private static Consumer<Hop> newAddresses(List<String> ips, Consumer<String> onHop) {
+        Set<String> seen = new HashSet<>();
+        return hop -> {
+            String ip = hop.address();
+            if (ip != null && seen.add(ip)) {
+                ips.add(ip);
+                onHop.accept(ip);
+            }
+        };
+    }
 }
@@ -0,0 +1,39 @@
+package com.danielbeire;
+
+// Snapshot of the globe's on-screen placement and rotation for one frame.
+// Reused from frame to frame so painting does not allocate.
+public final class View {
+
+    public int width, height, cx, cy, radius;
+    public double cosX, sinX, cosY, sinY;
+    // model-space direction that rotates onto screen +z (towards the viewer)
+    public double dirX, dirY, dirZ;
+
+    public void set(int width, int height, double zoom, double rotationX, double rotationY) {
+        this.width = width;
+        this.height = height;
+        this.radius = (int) (Math.min(width, height) / 2.2 * zoom);
+        this.cx = width / 2;
+        this.cy = height / 2;
+        this.cosX = Math.cos(rotationX);
+        this.sinX = Math.sin(rotationX);
+        this.cosY = Math.cos(rotationY);
+        this.sinY = Math.sin(rotationY);
+        this.dirX = sinY * cosX;
+        this.dirY = sinX;
+        this.dirZ = cosY * cosX;
+    }
+
+    // > 0 on the visible hemisphere
+    public double depth(double x, double y, double z) {
+        return x * dirX + y * dirY + z * dirZ;
+    }
+
+    public int screenX(double x, double y, double z) {
+        return (int) (cx + (x * cosY - z * sinY) * radius);
+    }
+
+    public int screenY(double x, double y, double z) {
+        return (int) (cy - (y * cosX - (x * sinY + z * cosY) * sinX) * radius);
+    }
+}
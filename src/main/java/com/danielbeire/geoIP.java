@@ -0,0 +1,121 @@
+package com.danielbeire;
+
+import java.awt.Point;
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class geoIP {
+
+    // Shared across traces and sessions: loaded at startup, saved on exit
+    private static final GeoCache CACHE = GeoCache.fromConfig();
+    private static final File CACHE_FILE = GeoCache.configuredFile();
+
+    static {
+        if (CACHE_FILE != null) {
+            try {
+                CACHE.load(CACHE_FILE);
+            } catch (Exception e) {
+                System.err.println("Ignoring GeoIP cache " + CACHE_FILE + ": " + e.getMessage());
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(geoIP::saveCache, "geoip-cache-save"));
+        }
+    }
+
+    // Lookups currently being resolved; concurrent traces wait for these instead of
+    // requesting the same IP again
+    private static final ConcurrentHashMap<String, CompletableFuture<Point.Double>> IN_FLIGHT =
+        new ConcurrentHashMap<>();
+
+    private static GeoEngine engine;
+
+    // -Dtv.geoip.engine=local uses the offline database, anything else ip-api.com
+    static synchronized GeoEngine engine() throws Exception {
+        if (engine == null) {
+            engine = "local".equalsIgnoreCase(AppConfig.get("geoip.engine", "http"))
+                    ? LocalGeoEngine.open() : new HttpGeoEngine();
+        }
+        return engine;
+    }
+
+    public static GeoCache cache() {
+        return CACHE;
+    }
+
+    public static void saveCache() {
+        if (CACHE_FILE == null) return;
+        try {
+            CACHE.save(CACHE_FILE);
+        } catch (Exception e) {
+            System.err.println("Could not save GeoIP cache: " + e.getMessage());
+        }
+    }
+
+    public List<Point.Double> getCoordinates(List<String> ips) throws Exception {
+        if (ips == null || ips.isEmpty()) return Collections.emptyList();
+
+        // Preserve original hop order
+        List<Point.Double> out = new ArrayList<>();
+        for (Point.Double p : locate(ips)) if (p != null) out.add(p);
+        return out;
+    }
+
+    // (lon, lat) per ip, in the same order; null where an ip could not be located
+    public Point.Double[] locate(List<String> ips) throws Exception {
+        // One cache probe per IP; misses are looked up in one batch
+        Point.Double[] found = new Point.Double[ips.size()];
+        Set<String> toQuery = new LinkedHashSet<>();
+        for (int i = 0; i < ips.size(); i++) {
+            GeoCache.Entry e = CACHE.get(ips.get(i));
+            if (e != null) found[i] = e.point;
+            else toQuery.add(ips.get(i));
+        }
+
+        if (!toQuery.isEmpty()) {
+            // Claim the IPs nobody else is resolving; wait for the rest
+            List<String> owned = new ArrayList<>();
+            Map<String, CompletableFuture<Point.Double>> pending = new HashMap<>();
+            for (String ip : toQuery) {
+                CompletableFuture<Point.Double> mine = new CompletableFuture<>();
+                CompletableFuture<Point.Double> other = IN_FLIGHT.putIfAbsent(ip, mine);
+                if (other == null) {
+                    // the owner may have cached it and let go between our cache probe and the claim
+                    GeoCache.Entry e = CACHE.get(ip);
+                    if (e != null) {
+                        mine.complete(e.point);
+                        IN_FLIGHT.remove(ip, mine);
+                    } else {
+                        owned.add(ip);
+                    }
+                }
+                pending.put(ip, other != null ? other : mine);
+            }
+
+            if (!owned.isEmpty()) {
+                Map<String, Point.Double> located = Collections.emptyMap();
+                try {
+                    GeoEngine engine = engine();
+                    long t0 = System.nanoTime();
+                    try {
+                        located = engine.locate(owned);
+                    } finally {
+                        Metrics.GEOIP_REQUEST.record(System.nanoTime() - t0);
+                        Metrics.GEOIP_BATCH.record(owned.size());
+                    }
+                    for (Map.Entry<String, Point.Double> e : located.entrySet()) CACHE.put(e.getKey(), e.getValue());
+                } finally {
+                    // unanswered IPs complete as null and are retried by the next trace
+                    for (String ip : owned) pending.get(ip).complete(located.get(ip));
+                    for (String ip : owned) IN_FLIGHT.remove(ip);
+                }
+            }
+            for (int i = 0; i < ips.size(); i++) {
+                CompletableFuture<Point.Double> f = pending.get(ips.get(i));
+                if (f != null) found[i] = f.get();
+            }
+        }
+
+        return found;
+    }
+}
@@ -0,0 +1,56 @@
+package com.danielbeire;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GeoIpIndexTest {
+
+    @TempDir
+    Path dir;
+
+    private GeoIpIndex importRows(String csv) throws Exception {
+        File in = dir.resolve("ranges.csv").toFile(), out = dir.resolve("geoip.bin").toFile();
+        Files.write(in.toPath(), csv.getBytes(StandardCharsets.UTF_8));
+        GeoIpIndex.importCsv(in, out, 2, 3);
+        return GeoIpIndex.open(out);
+    }
+
+    private static float latOf(GeoIpIndex index, String ip) {
+        int row = index.find(GeoIpIndex.parseIpv4(ip));
+        return row < 0 ? Float.NaN : index.lat(row);
+    }
+
+    @Test
+    void overlappingRangesAreClippedAndNestedOnesDropped() throws Exception {
+        GeoIpIndex index = importRows("start,end,lat,lon\n"
+                + "10.0.0.0,10.0.0.255,1,0\n"
+                + "10.0.0.128,10.0.1.255,2,0\n"   // overlaps the first: clipped to 10.0.1.0
+                + "10.0.0.10,10.0.0.20,3,0\n"     // inside the first: dropped
+                + "10.0.0.0,10.0.0.50,4,0\n"      // same start, nested: dropped
+                + "10.0.3.0/24,,5,0\n");
+
+        assertEquals(3, index.size());
+        assertEquals(1f, latOf(index, "10.0.0.0"), 0);
+        assertEquals(1f, latOf(index, "10.0.0.15"), 0);
+        assertEquals(1f, latOf(index, "10.0.0.200"), 0);
+        assertEquals(2f, latOf(index, "10.0.1.0"), 0);
+        assertEquals(2f, latOf(index, "10.0.1.255"), 0);
+        assertEquals(Float.NaN, latOf(index, "10.0.2.1"), 0);
+        assertEquals(5f, latOf(index, "10.0.3.77"), 0);
+    }
+
+    @Test
+    void rangesAcrossTheSignBitStayOrdered() throws Exception {
+        GeoIpIndex index = importRows("127.0.0.0,128.0.0.255,1,0\n128.0.0.0,128.0.1.255,2,0\n");
+
+        assertEquals(1f, latOf(index, "127.255.255.255"), 0);
+        assertEquals(1f, latOf(index, "128.0.0.255"), 0);
+        assertEquals(2f, latOf(index, "128.0.1.0"), 0);
+    }
+}
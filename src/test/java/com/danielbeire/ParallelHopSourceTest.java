@@ -0,0 +1,88 @@
+package com.danielbeire;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+// ParallelHopSource driven by a ScriptedProber, so no packets are sent
+class ParallelHopSourceTest {
+
+    // A recorded hop answered by ip after rtt ms; a null ip is a silent TTL
+    private static Hop hop(int ttl, String ip, float rtt) {
+        Hop h = new Hop();
+        h.reset(ttl);
+        if (ip == null) h.addProbe(Float.NaN, -1);
+        else h.addProbe(rtt, h.addResponder(ip));
+        return h;
+    }
+
+    private static List<Integer> ttls(List<Hop> hops) {
+        List<Integer> out = new ArrayList<>();
+        for (Hop h : hops) out.add(h.ttl());
+        return out;
+    }
+
+    @Test
+    void reportsHopsInTtlOrderWhenRepliesArriveOutOfOrder() throws Exception {
+        // lower TTLs answer last
+        List<Hop> path = Arrays.asList(hop(1, "10.0.0.1", 300), hop(2, "10.0.1.1", 200),
+                hop(3, "10.0.2.1", 100), hop(4, "93.184.216.34", 10));
+        ScriptedProber script = new ScriptedProber(path, 2000);
+        List<Integer> answered = Collections.synchronizedList(new ArrayList<>());
+        ParallelHopSource.Prober recording = (target, ttl, hop) -> {
+            boolean reached = script.probe(target, ttl, hop);
+            answered.add(ttl);
+            return reached;
+        };
+
+        List<Hop> reported = new ArrayList<>();
+        List<Hop> hops = new ParallelHopSource(recording, 8).trace("example.org", line -> { }, reported::add);
+
+        assertEquals(Arrays.asList(1, 2, 3, 4), ttls(hops));
+        assertEquals(Arrays.asList(1, 2, 3, 4), ttls(reported));
+        assertEquals("10.0.0.1", hops.get(0).address());
+        assertEquals("93.184.216.34", hops.get(3).address());
+        assertNotEquals(1, (int) answered.get(0), "replies should have arrived out of order: " + answered);
+    }
+
+    @Test
+    void stopsAtTheDestination() throws Exception {
+        List<Hop> path = Arrays.asList(hop(1, "10.0.0.1", 5), hop(2, "10.0.1.1", 5), hop(3, "93.184.216.34", 5));
+        List<Hop> reported = new ArrayList<>();
+        long t0 = System.nanoTime();
+        // TTLs past the destination would otherwise be answered too, and silent ones wait 5 s
+        List<Hop> hops = new ParallelHopSource(new ScriptedProber(path, 5000), 30).trace("example.org", line -> { }, reported::add);
+        long millis = (System.nanoTime() - t0) / 1_000_000;
+
+        assertEquals(Arrays.asList(1, 2, 3), ttls(hops));
+        assertEquals(3, reported.size());
+        assertEquals("93.184.216.34", hops.get(2).address());
+        assertTrue(millis < 2000, "trace took " + millis + " ms");
+    }
+
+    @Test
+    void silentTtlsAreTimeouts() throws Exception {
+        List<Hop> path = Arrays.asList(hop(1, "10.0.0.1", 5), hop(2, null, 0), hop(3, null, 0),
+                hop(4, "93.184.216.34", 5));
+        long t0 = System.nanoTime();
+        List<Hop> hops = new ParallelHopSource(new ScriptedProber(path, 300), 30).trace("example.org", line -> { }, null);
+        long millis = (System.nanoTime() - t0) / 1_000_000;
+
+        assertEquals(Arrays.asList(1, 2, 3, 4), ttls(hops));
+        for (Hop silent : hops.subList(1, 3)) {
+            assertNull(silent.address());
+            assertTrue(silent.probeCount() > 0);
+            assertEquals(silent.probeCount(), silent.lost());
+            assertTrue(Double.isNaN(silent.avgRtt()));
+        }
+        // both silent TTLs time out together, not one after the other
+        assertTrue(millis >= 300 && millis < 600 + 300, "trace took " + millis + " ms");
+    }
+}
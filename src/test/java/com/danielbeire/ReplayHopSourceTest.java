@@ -0,0 +1,69 @@
+package com.danielbeire;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+// Recorded Linux traceroute and Windows tracert captures of the same path, played back
+class ReplayHopSourceTest {
+
+    private static List<Hop> replay(String resource, List<String> lines, List<Hop> reported) throws Exception {
+        File capture = new File(ReplayHopSourceTest.class.getResource(resource).toURI());
+        return new ReplayHopSource(capture).trace("ignored", lines::add, reported::add);
+    }
+
+    @Test
+    void parsesLinuxTraceroute() throws Exception {
+        List<String> lines = new ArrayList<>();
+        List<Hop> reported = new ArrayList<>();
+        List<Hop> hops = replay("/traceroute-linux.txt", lines, reported);
+
+        assertEquals(6, lines.size());
+        assertEquals(5, hops.size());
+        assertEquals(5, reported.size());
+        assertEquals("192.168.1.1", hops.get(0).address());
+        assertEquals(1.204f, hops.get(0).rtt(0), 1e-3);
+        assertEquals(3, hops.get(1).probeCount());
+
+        Hop silent = hops.get(2);
+        assertEquals(3, silent.ttl());
+        assertNull(silent.address());
+        assertEquals(3, silent.lost());
+
+        // load-balanced hop: two responders
+        Hop balanced = hops.get(3);
+        assertEquals(2, balanced.responderCount());
+        assertEquals("62.115.4.1", balanced.responder(0));
+        assertEquals("62.115.4.9", balanced.responder(1));
+
+        Hop last = hops.get(4);
+        assertEquals("93.184.216.34", last.address());
+        assertEquals(1, last.lost());
+    }
+
+    @Test
+    void parsesWindowsTracert() throws Exception {
+        List<String> lines = new ArrayList<>();
+        List<Hop> reported = new ArrayList<>();
+        List<Hop> hops = replay("/tracert-windows.txt", lines, reported);
+
+        assertEquals(5, hops.size());
+        assertEquals(5, reported.size());
+        for (int i = 0; i < hops.size(); i++) assertEquals(i + 1, hops.get(i).ttl());
+        assertEquals("192.168.1.1", hops.get(0).address());
+        assertEquals(3, hops.get(0).probeCount());
+        assertEquals(1f, hops.get(0).rtt(0), 0, "<1 ms reads as its upper bound");
+
+        assertNull(hops.get(2).address());
+        assertEquals(hops.get(2).probeCount(), hops.get(2).lost());
+
+        Hop named = hops.get(3);
+        assertEquals("62.115.4.1", named.address());
+        assertEquals(1, named.lost());
+        assertEquals("93.184.216.34", hops.get(4).address());
+    }
+}
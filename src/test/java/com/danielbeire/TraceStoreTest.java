@@ -0,0 +1,150 @@
+package com.danielbeire;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TraceStoreTest {
+
+    @TempDir
+    File dir;
+
+    private static TraceRecord record(String target, long time, String... addresses) {
+        List<Hop> hops = new ArrayList<>();
+        for (int i = 0; i < addresses.length; i++) {
+            Hop h = new Hop();
+            h.reset(i + 1);
+            h.addProbe(5f * (i + 1), h.addResponder(addresses[i]));
+            hops.add(h);
+        }
+        return TraceRecord.of(target, time, hops, Collections.<String, Point.Double>emptyMap());
+    }
+
+    @Test
+    void tornTailIsDroppedOnLoad() throws Exception {
+        TraceStore store = TraceStore.open(dir);
+        store.append(record("example.org", 1000, "10.0.0.1", "93.184.216.34"));
+        store.append(record("example.org", 2000, "10.0.0.1", "10.0.9.9", "93.184.216.34"));
+        store.close();
+
+        // a crash halfway through the next append: length prefix plus part of a record
+        File[] segs = dir.listFiles((d, name) -> name.endsWith(".dat"));
+        assertEquals(1, segs.length);
+        long intact = segs[0].length();
+        try (RandomAccessFile f = new RandomAccessFile(segs[0], "rw")) {
+            f.seek(intact);
+            f.write(new byte[] {100, 0, 0, 0, 1, 2, 3, 4, 5});
+        }
+
+        store = TraceStore.open(dir);
+        assertEquals(2, store.size());
+        assertEquals(intact, segs[0].length());
+        store.append(record("example.org", 3000, "10.0.0.1", "93.184.216.34"));
+        List<TraceRecord> history = store.history("example.org");
+        assertEquals(3, history.size());
+        assertEquals(3, history.get(1).hopCount());
+        assertEquals("10.0.9.9", history.get(1).address(1));
+        assertEquals(3000, history.get(2).timeMillis());
+        store.close();
+
+        store = TraceStore.open(dir);
+        assertEquals(3, store.size());
+        store.close();
+    }
+
+    @Test
+    void aSecondStoreOnTheSameDirectoryIsReadOnly() throws Exception {
+        TraceStore writer = TraceStore.open(dir);
+        writer.append(record("example.org", 1000, "10.0.0.1"));
+
+        TraceStore reader = TraceStore.open(dir);
+        assertFalse(reader.writable());
+        assertEquals(1, reader.size());
+        assertThrows(IOException.class, () -> reader.append(record("example.org", 2000, "10.0.0.2")));
+        writer.append(record("example.org", 3000, "10.0.0.3"));
+        reader.close();
+        writer.close();
+
+        TraceStore reopened = TraceStore.open(dir);
+        assertTrue(reopened.writable());
+        List<TraceRecord> history = reopened.history("example.org");
+        assertEquals(2, history.size());
+        assertEquals("10.0.0.3", history.get(1).address(0));
+        reopened.close();
+    }
+
+    @Test
+    void runsWithNoAnsweringHopRoundTrip() throws Exception {
+        // every hop timed out, and the smallest possible record: empty target, no hops
+        List<Hop> silent = new ArrayList<>();
+        for (int ttl = 1; ttl <= 3; ttl++) {
+            Hop h = new Hop();
+            h.reset(ttl);
+            h.addProbe(Float.NaN, -1);
+            silent.add(h);
+        }
+        TraceStore store = TraceStore.open(dir);
+        store.append(TraceRecord.of("example.org", 1000, silent, Collections.<String, Point.Double>emptyMap()));
+        store.append(record("", 2000));
+        store.append(record("example.org", 3000, "10.0.0.1"));
+        store.close();
+
+        store = TraceStore.open(dir);
+        assertEquals(3, store.size());
+        List<TraceRecord> history = store.history("example.org");
+        assertEquals(2, history.size());
+        assertEquals(3, history.get(0).hopCount());
+        assertNull(history.get(0).address(2));
+        assertEquals("10.0.0.1", history.get(1).address(0));
+        assertEquals(0, store.latest("").hopCount());
+        store.close();
+    }
+
+    @Test
+    void addressesUpToTheLengthLimitRoundTrip() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < TraceRecord.MAX_ADDRESS) sb.append("ab.");
+        String longest = sb.substring(0, TraceRecord.MAX_ADDRESS);
+        String v6 = "2001:db8:85a3:0:0:8a2e:370:7334";
+
+        TraceStore store = TraceStore.open(dir);
+        store.append(record("example.org", 1000, v6, longest));
+        store.close();
+        store = TraceStore.open(dir);
+        TraceRecord r = store.latest("example.org");
+        assertEquals(v6, r.address(0));
+        assertEquals(longest, r.address(1));
+        store.close();
+    }
+
+    @Test
+    void unencodableAddressesAreRejectedBeforeWriting() throws Exception {
+        StringBuilder tooLong = new StringBuilder();
+        while (tooLong.length() <= TraceRecord.MAX_ADDRESS) tooLong.append('a');
+
+        TraceStore store = TraceStore.open(dir);
+        store.append(record("example.org", 1000, "10.0.0.1"));
+        assertThrows(IllegalArgumentException.class, () -> store.append(record("example.org", 2000, tooLong.toString())));
+        assertThrows(IllegalArgumentException.class, () -> store.append(record("example.org", 3000, "r\u00e9seau.example")));
+        store.append(record("example.org", 4000, "10.0.0.2"));
+        store.close();
+
+        TraceStore reopened = TraceStore.open(dir);
+        List<TraceRecord> history = reopened.history("example.org");
+        assertEquals(2, history.size());
+        assertEquals("10.0.0.2", history.get(1).address(0));
+        reopened.close();
+    }
+}